@@ -0,0 +1,249 @@
+package com.gigtasker.userservice.configuration;
+
+import com.gigtasker.common.dto.UserDTO;
+import com.gigtasker.userservice.enums.UserField;
+import com.gigtasker.userservice.service.KeycloakService;
+import com.gigtasker.userservice.service.ReferenceIndex;
+import com.gigtasker.userservice.service.UserAccessTelemetry;
+import com.gigtasker.userservice.service.UserLookupService;
+import com.gigtasker.userservice.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.Keycloak;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the service up before it reports ready: reference data, every connection pool (primary and replicas),
+ * the {@code /me} cache for the most recently active users, and the main read paths (Hibernate query plans,
+ * MapStruct, Jackson and the JIT) through the same {@link UserLookupService} layer requests use.
+ * <p>
+ * Runs as the last {@link ApplicationRunner}, after the seeder. Spring Boot only switches readiness to
+ * {@code ACCEPTING_TRAFFIC} once all runners have returned, so the readiness probe stays down until this is done.
+ * Every phase is best-effort: a failure is logged and startup continues, and phases stop once
+ * {@code app.warmup.timeout} is used up. Durations go to {@code application.warmup} (tagged by phase).
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class ApplicationWarmupRunner implements ApplicationRunner {
+
+    private static final String RECENT_USERS_SQL = """
+            SELECT u.id, u.keycloak_id
+            FROM (SELECT user_id, max(occurred_at) AS last_seen FROM user_audit_log
+                  WHERE occurred_at > ? AND user_id IS NOT NULL
+                  GROUP BY user_id
+                  ORDER BY last_seen DESC
+                  LIMIT ?) recent
+            JOIN users u ON u.id = recent.user_id AND u.is_deleted = false
+            ORDER BY recent.last_seen DESC
+            """;
+
+    private record RecentUser(long id, UUID keycloakId) {}
+
+    private final ReferenceIndex referenceIndex;
+    private final UserService userService;
+    private final UserLookupService userLookupService;
+    private final UserAccessTelemetry accessTelemetry;
+    private final KeycloakService keycloakService;
+    private final Map<String, Keycloak> keycloakClients;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonMapper jsonMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.warmup.timeout:60s}")
+    private Duration timeout;
+
+    @Value("${app.warmup.db-connections:10}")
+    private int dbConnections;
+
+    @Value("${app.warmup.keycloak-connections:4}")
+    private int keycloakConnections;
+
+    @Value("${app.warmup.recent-users:500}")
+    private int recentUsers;
+
+    @Value("${app.warmup.recent-window:7d}")
+    private Duration recentWindow;
+
+    @Value("${app.warmup.iterations:2000}")
+    private int iterations;
+
+    public ApplicationWarmupRunner(ReferenceIndex referenceIndex, UserService userService,
+                                   UserLookupService userLookupService, UserAccessTelemetry accessTelemetry,
+                                   KeycloakService keycloakService, Map<String, Keycloak> keycloakClients,
+                                   DataSource dataSource, JdbcTemplate jdbcTemplate, JsonMapper jsonMapper,
+                                   MeterRegistry meterRegistry) {
+        this.referenceIndex = referenceIndex;
+        this.userService = userService;
+        this.userLookupService = userLookupService;
+        this.accessTelemetry = accessTelemetry;
+        this.keycloakService = keycloakService;
+        this.keycloakClients = keycloakClients;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonMapper = jsonMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            log.info("Warm-up is disabled in config.");
+            return;
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long start = System.nanoTime();
+        log.info("🔄 Warming up before accepting traffic...");
+
+        phase("reference-data", deadline, this::warmReferenceData);
+        phase("database-pools", deadline, this::primeDatabasePools);
+        phase("keycloak-pool", deadline, this::primeKeycloakPools);
+        List<Long> userIds = new ArrayList<>();
+        phase("recent-users", deadline, () -> userIds.addAll(loadRecentUsers()));
+        phase("read-paths", deadline, () -> exerciseReadPaths(userIds, deadline));
+        // Warm-up reads aren't traffic: keep them out of the first telemetry window
+        accessTelemetry.discardCurrentWindow();
+
+        long elapsed = System.nanoTime() - start;
+        record("total", elapsed);
+        log.info("✅ Warm-up finished in {} ms ({} recent users)", TimeUnit.NANOSECONDS.toMillis(elapsed), userIds.size());
+    }
+
+    private void phase(String name, long deadline, Runnable work) {
+        if (System.nanoTime() > deadline) {
+            log.warn("Warm-up timeout reached, skipping {}", name);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } catch (Exception e) {
+            log.warn("❌ Warm-up phase {} failed: {}", name, e.getMessage());
+        } finally {
+            record(name, System.nanoTime() - start);
+        }
+    }
+
+    private void record(String phase, long nanos) {
+        Timer.builder("application.warmup")
+                .description("Time spent warming up before readiness")
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Rebuild after the seeder so the first request doesn't trigger the lazy load
+    private void warmReferenceData() {
+        referenceIndex.load();
+        referenceIndex.getAllGenders();
+        referenceIndex.getRegions();
+        jsonMapper.writeValueAsBytes(referenceIndex.getAllCountries());
+    }
+
+    // Open connections on every pool (primary and each replica) now rather than under the first burst
+    private void primeDatabasePools() {
+        for (DataSource pool : pools()) {
+            int connections = pool instanceof HikariDataSource hikari
+                    ? Math.min(dbConnections, hikari.getMaximumPoolSize())
+                    : dbConnections;
+            // Held at once, so the pool really has to open that many
+            CountDownLatch allOpen = new CountDownLatch(connections);
+            try (ExecutorService executor = Executors.newFixedThreadPool(connections)) {
+                for (int i = 0; i < connections; i++) {
+                    executor.submit(() -> {
+                        try (Connection connection = pool.getConnection()) {
+                            connection.isValid(2);
+                            allOpen.countDown();
+                            allOpen.await(5, TimeUnit.SECONDS);
+                        }
+                        return null;
+                    });
+                }
+            }
+        }
+    }
+
+    // The routing data source sits behind a LazyConnectionDataSourceProxy; its resolved targets are the pools
+    private List<DataSource> pools() {
+        DataSource target = dataSource instanceof DelegatingDataSource delegating
+                ? delegating.getTargetDataSource()
+                : dataSource;
+        if (target instanceof AbstractRoutingDataSource routing) {
+            return List.copyOf(routing.getResolvedDataSources().values());
+        }
+        return List.of(dataSource);
+    }
+
+    // Fresh tokens, and a few concurrent calls so the HTTP pool has live keep-alive connections
+    private void primeKeycloakPools() {
+        keycloakClients.values().forEach(keycloak -> keycloak.tokenManager().getAccessToken());
+        try (ExecutorService executor = Executors.newFixedThreadPool(keycloakConnections)) {
+            for (int i = 0; i < keycloakConnections; i++) {
+                executor.submit(() -> keycloakService.listUsers(0, 1));
+            }
+        }
+    }
+
+    // Goes through the lookup layer, so the /me cache holds the recently active users before traffic arrives
+    private List<Long> loadRecentUsers() {
+        Timestamp since = Timestamp.from(Instant.now().minus(recentWindow));
+        List<RecentUser> recent = jdbcTemplate.query(RECENT_USERS_SQL,
+                (rs, rowNum) -> new RecentUser(rs.getLong("id"), rs.getObject("keycloak_id", UUID.class)),
+                since, recentUsers);
+        recent.forEach(user -> userLookupService.primeMe(user.keycloakId()));
+        return recent.stream().map(RecentUser::id).toList();
+    }
+
+    // Same paths real traffic takes, repeated until the JIT has compiled them
+    private void exerciseReadPaths(List<Long> userIds, long deadline) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<Long> batch = userIds.subList(0, Math.min(50, userIds.size()));
+        EnumSet<UserField> fields = EnumSet.of(UserField.ID, UserField.USERNAME, UserField.EMAIL);
+
+        for (int i = 0; i < iterations && System.nanoTime() < deadline; i++) {
+            UserDTO user = userLookupService.getUserById(userIds.get(i % userIds.size()));
+            if (user != null) {
+                userService.getUserByEmail(user.email());
+                jsonMapper.writeValueAsBytes(user);
+            }
+            if (i % 20 == 0) {
+                jsonMapper.writeValueAsBytes(userLookupService.findUsersByIds(batch));
+                userService.findUserFieldsByIds(batch, fields);
+                referenceIndex.searchCountriesByPrefix("a", 10);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.gigtasker.userservice.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    // Bounded executor for fanning out Keycloak admin calls (bulk ops, retention job).
+    // maxConcurrency is the limit either way, so we never hammer Keycloak with more than this.
+    @Bean
+    public AsyncTaskExecutor keycloakTaskExecutor(
+            @Value("${app.keycloak.admin.max-concurrency:8}") int maxConcurrency,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        if (virtualThreads) {
+            // A virtual thread per call, throttled by a concurrency limit instead of a pool
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("keycloak-admin-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(maxConcurrency);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrency);
+        executor.setMaxPoolSize(maxConcurrency);
+        executor.setThreadNamePrefix("keycloak-admin-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,128 @@
+package com.gigtasker.userservice.configuration;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional primary/replica split. Disabled by default, in which case Spring Boot's single
+ * auto-configured pool is used as before.
+ * <p>
+ * Enable with {@code app.datasource.routing.enabled=true} and a comma-separated
+ * {@code app.datasource.replica.urls}. Each pool gets its own Hikari pool name so the
+ * {@code hikaricp.*} metrics can be told apart by the {@code pool} tag. The pools are not beans of their own
+ * (their number depends on config), so this class closes them when the context shuts down.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig implements DisposableBean {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Value("${spring.datasource.url}")
+    private String primaryUrl;
+
+    @Value("${spring.datasource.username}")
+    private String primaryUsername;
+
+    @Value("${spring.datasource.password}")
+    private String primaryPassword;
+
+    @Value("${app.datasource.primary.max-pool-size:10}")
+    private int primaryPoolSize;
+
+    @Value("${app.datasource.replica.urls:}")
+    private String replicaUrls;
+
+    @Value("${app.datasource.replica.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${app.datasource.replica.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    @Value("${app.datasource.replica.max-pool-size:10}")
+    private int replicaPoolSize;
+
+    @Value("${app.datasource.replica.stickiness:5s}")
+    private Duration stickiness;
+
+    @Bean
+    public ReplicaLagGuard replicaLagGuard() {
+        return new ReplicaLagGuard(stickiness);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaLagGuard replicaLagGuard, MeterRegistry meterRegistry) {
+        MicrometerMetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+
+        Map<Object, Object> targets = new HashMap<>();
+        HikariDataSource primary = pool("user-service-primary", primaryUrl, primaryUsername, primaryPassword,
+                primaryPoolSize, false, metrics);
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primary);
+
+        List<String> urls = Arrays.stream(replicaUrls.split(","))
+                .map(String::trim)
+                .filter(StringUtils::isNotBlank)
+                .toList();
+
+        for (int i = 0; i < urls.size(); i++) {
+            targets.put(ReplicaRoutingDataSource.REPLICA_PREFIX + i,
+                    pool("user-service-replica-" + i, urls.get(i), replicaUsername, replicaPassword,
+                            replicaPoolSize, true, metrics));
+        }
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(urls.size(), replicaLagGuard);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+
+        log.info("Read/write routing enabled with {} replica pool(s)", urls.size());
+
+        // Defer the physical connection until the first statement, by then the tx read-only flag is known
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private HikariDataSource pool(String name, String url, String username, String password, int size,
+                                  boolean readOnly, MicrometerMetricsTrackerFactory metrics) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(size);
+        config.setReadOnly(readOnly);
+        config.setMetricsTrackerFactory(metrics);
+        HikariDataSource pool = new HikariDataSource(config);
+        pools.add(pool);
+        return pool;
+    }
+
+    @Override
+    public void destroy() {
+        for (HikariDataSource pool : pools) {
+            log.info("Closing pool {}", pool.getPoolName());
+            pool.close();
+        }
+        pools.clear();
+    }
+}
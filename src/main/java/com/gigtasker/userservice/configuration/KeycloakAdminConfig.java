@@ -1,27 +1,64 @@
 package com.gigtasker.userservice.configuration;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
 import org.keycloak.OAuth2Constants;
+import org.keycloak.admin.client.JacksonProvider;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class KeycloakAdminConfig {
 
+    // One pooled HTTP client per Keycloak bean. Per-route == total: each client only ever talks to one host.
+    @Value("${app.keycloak.http.max-connections:32}")
+    private int maxConnections;
+
+    @Value("${app.keycloak.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${app.keycloak.http.read-timeout:10s}")
+    private Duration readTimeout;
+
+    // How long a caller may wait for a free pooled connection before failing
+    @Value("${app.keycloak.http.pool-timeout:5s}")
+    private Duration poolTimeout;
+
+    @Value("${app.keycloak.http.connection-ttl:5m}")
+    private Duration connectionTtl;
+
+    @Value("${app.keycloak.http.idle-eviction:30s}")
+    private Duration idleEviction;
+
     @Bean
     public Keycloak keycloakAdmin(
             @Value("${keycloak.admin.server-url}") String serverUrl,
             @Value("${keycloak.admin.realm}") String realm,
             @Value("${keycloak.admin.username}") String username,
             @Value("${keycloak.admin.password}") String password,
-            @Value("${keycloak.admin.client-id}") String clientId
+            @Value("${keycloak.admin.client-id}") String clientId,
+            MeterRegistry meterRegistry
     ) {
         return KeycloakBuilder.builder()
                 .serverUrl(serverUrl).realm(realm)
                 .grantType(OAuth2Constants.PASSWORD)
                 .clientId(clientId).username(username).password(password)
+                .resteasyClient(pooledClient("keycloakAdmin", meterRegistry))
                 .build();
     }
 
@@ -30,12 +67,55 @@ public class KeycloakAdminConfig {
             @Value("${keycloak.bot.server-url}") String serverUrl,
             @Value("${keycloak.bot.realm}") String realm,
             @Value("${keycloak.bot.client-id}") String clientId,
-            @Value("${keycloak.bot.client-secret}") String clientSecret
+            @Value("${keycloak.bot.client-secret}") String clientSecret,
+            MeterRegistry meterRegistry
     ) {
         return KeycloakBuilder.builder()
                 .serverUrl(serverUrl).realm(realm)
                 .grantType(OAuth2Constants.CLIENT_CREDENTIALS)
                 .clientId(clientId).clientSecret(clientSecret)
+                .resteasyClient(pooledClient("keycloakBot", meterRegistry))
+                .build();
+    }
+
+    private Client pooledClient(String name, MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager pool =
+                new PoolingHttpClientConnectionManager(connectionTtl.toMillis(), TimeUnit.MILLISECONDS);
+        pool.setMaxTotal(maxConnections);
+        pool.setDefaultMaxPerRoute(maxConnections);
+        pool.setValidateAfterInactivity(2_000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .setConnectionRequestTimeout((int) poolTimeout.toMillis())
                 .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEviction.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+
+        registerPoolMetrics(name, pool, meterRegistry);
+
+        return ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+                .httpEngine(new ApacheHttpClient43Engine(httpClient, true))
+                .register(JacksonProvider.class, 100)
+                .build();
+    }
+
+    private static void registerPoolMetrics(String name, PoolingHttpClientConnectionManager pool,
+                                            MeterRegistry meterRegistry) {
+        Gauge.builder("keycloak.http.pool.leased", pool, p -> p.getTotalStats().getLeased())
+                .tag("client", name).register(meterRegistry);
+        Gauge.builder("keycloak.http.pool.available", pool, p -> p.getTotalStats().getAvailable())
+                .tag("client", name).register(meterRegistry);
+        Gauge.builder("keycloak.http.pool.pending", pool, p -> p.getTotalStats().getPending())
+                .tag("client", name).register(meterRegistry);
+        Gauge.builder("keycloak.http.pool.max", pool, p -> p.getTotalStats().getMax())
+                .tag("client", name).register(meterRegistry);
     }
 }
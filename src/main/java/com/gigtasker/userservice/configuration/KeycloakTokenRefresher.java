@@ -0,0 +1,85 @@
+package com.gigtasker.userservice.configuration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.token.TokenManager;
+import org.keycloak.representations.AccessTokenResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the admin tokens of every {@link Keycloak} bean fresh from a background thread.
+ * <p>
+ * {@link TokenManager} refreshes lazily, on whichever request thread first sees a token inside its
+ * minimum-validity window, and every other caller waits on its lock meanwhile. Checking on a schedule with a
+ * wider window than the check interval means the refresh always happens here instead.
+ */
+@Slf4j
+@Component
+public class KeycloakTokenRefresher {
+
+    private record TokenState(String token, long expiresAtMillis) {}
+
+    private final Map<String, Keycloak> clients;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TokenState> tokens = new ConcurrentHashMap<>();
+
+    @Value("${app.keycloak.token.min-validity:60s}")
+    private Duration minValidity;
+
+    public KeycloakTokenRefresher(Map<String, Keycloak> clients, MeterRegistry meterRegistry) {
+        this.clients = clients;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        clients.forEach((name, keycloak) -> {
+            keycloak.tokenManager().setMinTokenValidity(minValidity.toSeconds());
+            Gauge.builder("keycloak.token.expires.in", tokens, t -> secondsLeft(t.get(name)))
+                    .tag("client", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.keycloak.token.check-interval:15s}", initialDelayString = "5s")
+    public void refreshTokens() {
+        clients.forEach(this::refresh);
+    }
+
+    private void refresh(String name, Keycloak keycloak) {
+        try {
+            // Only hits Keycloak when the token is within minValidity of expiring
+            AccessTokenResponse response = keycloak.tokenManager().getAccessToken();
+            TokenState previous = tokens.get(name);
+            if (previous == null || !previous.token().equals(response.getToken())) {
+                tokens.put(name, new TokenState(response.getToken(),
+                        System.currentTimeMillis() + response.getExpiresIn() * 1000));
+                counter("keycloak.token.refreshed", name).increment();
+                log.debug("Keycloak token for {} refreshed, valid for {}s", name, response.getExpiresIn());
+            }
+        } catch (Exception e) {
+            counter("keycloak.token.refresh.failures", name).increment();
+            log.warn("❌ Keycloak token refresh failed for {}: {}", name, e.getMessage());
+        }
+    }
+
+    private Counter counter(String metric, String client) {
+        return meterRegistry.counter(metric, "client", client);
+    }
+
+    private static double secondsLeft(TokenState state) {
+        if (state == null) return 0;
+        return Math.max(0, (state.expiresAtMillis() - System.currentTimeMillis()) / 1000.0);
+    }
+}
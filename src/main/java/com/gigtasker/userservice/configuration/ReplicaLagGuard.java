@@ -0,0 +1,67 @@
+package com.gigtasker.userservice.configuration;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-your-writes protection for replica routing.
+ * After a caller writes, their reads are pinned to the primary for {@code stickiness} so they never see
+ * replica lag on their own changes. Callers are identified by the JWT {@code sub}; anonymous calls are not pinned.
+ * <p>
+ * The pins live in this instance's memory and are looked up from the request thread's security context, so the
+ * guarantee is per instance and per authenticated request: a read served by another instance, or work running
+ * without a security context (schedulers, async completions), is not pinned.
+ */
+public class ReplicaLagGuard {
+
+    // Upper bound before we sweep expired entries, keeps the map from growing with every writer we ever saw
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final long stickinessNanos;
+    private final Map<String, Long> lastWriteBySubject = new ConcurrentHashMap<>();
+
+    public ReplicaLagGuard(Duration stickiness) {
+        this.stickinessNanos = stickiness.toNanos();
+    }
+
+    public void recordWrite(String subject) {
+        if (subject == null) return;
+
+        lastWriteBySubject.put(subject, System.nanoTime());
+        if (lastWriteBySubject.size() > SWEEP_THRESHOLD) {
+            sweep();
+        }
+    }
+
+    public boolean mustReadFromPrimary() {
+        String subject = currentSubject();
+        if (subject == null) return false;
+
+        Long lastWrite = lastWriteBySubject.get(subject);
+        if (lastWrite == null) return false;
+
+        if (System.nanoTime() - lastWrite < stickinessNanos) {
+            return true;
+        }
+        lastWriteBySubject.remove(subject, lastWrite);
+        return false;
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        lastWriteBySubject.values().removeIf(ts -> now - ts >= stickinessNanos);
+    }
+
+    String currentSubject() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof Jwt jwt) {
+            return jwt.getSubject();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+package com.gigtasker.userservice.configuration;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Routes read-only transactions to one of the replica pools (round-robin) and everything else to the primary.
+ * Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, otherwise the
+ * connection is fetched before the transaction is flagged as read-only.
+ * <p>
+ * A caller is pinned to the primary ({@link ReplicaLagGuard}) only once a write statement is prepared on its
+ * primary connection; a non-read-only transaction that only selects doesn't pin anyone.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA_PREFIX = "replica-";
+
+    private static final Pattern SELECT = Pattern.compile("\\s*select\\b", Pattern.CASE_INSENSITIVE);
+
+    private final int replicaCount;
+    private final ReplicaLagGuard lagGuard;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(int replicaCount, ReplicaLagGuard lagGuard) {
+        this.replicaCount = replicaCount;
+        this.lagGuard = lagGuard;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnly = TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+
+        if (!readOnly || replicaCount == 0 || lagGuard.mustReadFromPrimary()) {
+            return PRIMARY;
+        }
+
+        int index = Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+        return REPLICA_PREFIX + index;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return trackWrites(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return trackWrites(super.getConnection(username, password));
+    }
+
+    private Connection trackWrites(Connection connection) {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return connection;
+        }
+        String subject = lagGuard.currentSubject();
+        if (subject == null) {
+            return connection;
+        }
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals" -> { return proxy == args[0]; }
+                        case "hashCode" -> { return System.identityHashCode(proxy); }
+                        default -> { }
+                    }
+                    if (isWrite(method, args)) {
+                        lagGuard.recordWrite(subject);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static boolean isWrite(Method method, Object[] args) {
+        return switch (method.getName()) {
+            // SQL only shows up at execute time: assume it writes
+            case "createStatement" -> true;
+            case "prepareStatement", "prepareCall" -> !(args[0] instanceof String sql && SELECT.matcher(sql).lookingAt());
+            default -> false;
+        };
+    }
+}
@@ -5,10 +5,17 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientAsyncConfiguration;
+import software.amazon.awssdk.core.client.config.SdkAdvancedAsyncClientOption;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
 public class S3Config {
@@ -25,6 +32,27 @@ public class S3Config {
     @Value("${cloud.aws.s3.region}")
     private String region;
 
+    @Value("${app.storage.s3.http.max-connections:64}")
+    private int maxConnections;
+
+    @Value("${app.storage.s3.http.max-pending-acquires:1000}")
+    private int maxPendingAcquires;
+
+    @Value("${app.storage.s3.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${app.storage.s3.http.acquire-timeout:5s}")
+    private Duration acquireTimeout;
+
+    @Value("${app.storage.s3.http.read-timeout:30s}")
+    private Duration readTimeout;
+
+    @Value("${app.storage.s3.completion-threads:8}")
+    private int completionThreads;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     @Bean
     public S3Client s3Client() {
         return S3Client.builder()
@@ -35,4 +63,37 @@ public class S3Config {
                 .forcePathStyle(true)
                 .build();
     }
+
+    // Non-blocking client for uploads/downloads; same endpoint override so MinIO works locally
+    @Bean
+    public S3AsyncClient s3AsyncClient(ExecutorService s3CompletionExecutor) {
+        return S3AsyncClient.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(accessKey, secretKey)))
+                .forcePathStyle(true)
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConnections)
+                        .maxPendingConnectionAcquires(maxPendingAcquires)
+                        .connectionTimeout(connectTimeout)
+                        .connectionAcquisitionTimeout(acquireTimeout)
+                        .readTimeout(readTimeout)
+                        .writeTimeout(readTimeout))
+                // Futures complete here, not on Netty event loops: continuations may touch the database
+                .asyncConfiguration(ClientAsyncConfiguration.builder()
+                        .advancedOption(SdkAdvancedAsyncClientOption.FUTURE_COMPLETION_EXECUTOR, s3CompletionExecutor)
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService s3CompletionExecutor() {
+        if (virtualThreads) {
+            // A virtual thread per completion; the DB work in continuations is bounded by the Hikari pool anyway
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("s3-completion-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(completionThreads,
+                Thread.ofPlatform().name("s3-completion-", 0).daemon().factory());
+    }
 }
@@ -0,0 +1,31 @@
+package com.gigtasker.userservice.configuration;
+
+import com.gigtasker.userservice.service.UserAccessTelemetry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/useraccess}: hottest user ids, working-set size and top-K share for the last completed
+ * telemetry window and the one in progress. Needs {@code useraccess} in
+ * {@code management.endpoints.web.exposure.include}.
+ */
+@Component
+@Endpoint(id = "useraccess")
+@RequiredArgsConstructor
+public class UserAccessEndpoint {
+
+    private final UserAccessTelemetry telemetry;
+
+    @ReadOperation
+    public Map<String, Object> userAccess() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("lastWindow", telemetry.lastWindow());
+        body.put("currentWindow", telemetry.currentWindow());
+        return body;
+    }
+}
@@ -0,0 +1,15 @@
+package com.gigtasker.userservice.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+
+@Configuration
+public class WebConfig {
+
+    // Lets internal callers ask for CBOR (Accept: application/cbor) instead of JSON, mostly for /users/batch
+    @Bean
+    public JacksonCborHttpMessageConverter cborHttpMessageConverter() {
+        return new JacksonCborHttpMessageConverter();
+    }
+}
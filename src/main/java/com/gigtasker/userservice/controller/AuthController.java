@@ -1,15 +1,30 @@
 package com.gigtasker.userservice.controller;
 
 import com.gigtasker.common.dto.UserDTO;
+import com.gigtasker.userservice.dto.AvailabilityResponse;
 import com.gigtasker.userservice.dto.LoginRequest;
 import com.gigtasker.userservice.dto.RefreshRequest;
 import com.gigtasker.userservice.dto.RegistrationRequest;
+import com.gigtasker.userservice.exceptions.DuplicateUserException;
+import com.gigtasker.userservice.exceptions.IdempotencyConflictException;
+import com.gigtasker.userservice.exceptions.IdempotencyKeyReuseException;
+import com.gigtasker.userservice.exceptions.RateLimitExceededException;
+import com.gigtasker.userservice.service.AuthRateLimiter;
 import com.gigtasker.userservice.service.AuthService;
+import com.gigtasker.userservice.service.IdempotencyService;
+import com.gigtasker.userservice.service.UserIdentityIndex;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.security.auth.login.LoginException;
@@ -21,19 +36,60 @@ import java.util.Map;
 public class AuthController {
 
     private final AuthService authService;
+    private final AuthRateLimiter authRateLimiter;
+    private final IdempotencyService idempotencyService;
+    private final UserIdentityIndex userIdentityIndex;
 
     @PostMapping("/register")
-    public ResponseEntity<UserDTO> register(@RequestBody RegistrationRequest req) {
-        return ResponseEntity.ok(authService.register(req));
+    public ResponseEntity<UserDTO> register(@RequestBody RegistrationRequest req, HttpServletRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        authRateLimiter.acquire("register", request.getRemoteAddr(), req.username());
+        return ResponseEntity.ok(idempotencyService.execute("register", idempotencyKey, req, UserDTO.class,
+                () -> authService.register(req)));
+    }
+
+    // Signup-form check, answered from the Bloom filter unless it's a (possible) hit
+    // Rate-limited like login: otherwise it's a free oracle for which usernames/emails exist
+    @GetMapping("/availability")
+    public ResponseEntity<AvailabilityResponse> checkAvailability(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email,
+            HttpServletRequest request) {
+        authRateLimiter.acquire("availability", request.getRemoteAddr(), null);
+        return ResponseEntity.ok(new AvailabilityResponse(
+                username != null ? !userIdentityIndex.isUsernameTaken(username) : null,
+                email != null ? !userIdentityIndex.isEmailTaken(email) : null
+        ));
     }
 
     @PostMapping("/login")
-    public ResponseEntity<Map<String, Object>> login(@RequestBody LoginRequest req) throws LoginException {
+    public ResponseEntity<Map<String, Object>> login(@RequestBody LoginRequest req, HttpServletRequest request)
+            throws LoginException {
+        authRateLimiter.acquire("login", request.getRemoteAddr(), req.username());
         return ResponseEntity.ok(authService.login(req));
     }
 
     @PostMapping("/refresh")
-    public ResponseEntity<Map<String, Object>> refresh(@RequestBody RefreshRequest req) throws LoginException {
+    public ResponseEntity<Map<String, Object>> refresh(@RequestBody RefreshRequest req, HttpServletRequest request)
+            throws LoginException {
+        authRateLimiter.acquire("refresh", request.getRemoteAddr(), null);
         return ResponseEntity.ok(authService.refresh(req));
     }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleRateLimit(RateLimitExceededException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(IdempotencyKeyReuseException.class)
+    public ResponseEntity<Map<String, Object>> handleKeyReuse(IdempotencyKeyReuseException ex) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler({DuplicateUserException.class, IdempotencyConflictException.class})
+    public ResponseEntity<Map<String, Object>> handleConflict(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", ex.getMessage()));
+    }
 }
@@ -0,0 +1,153 @@
+package com.gigtasker.userservice.controller;
+
+import com.gigtasker.userservice.service.AvatarCache;
+import com.gigtasker.userservice.service.AvatarCache.CachedAvatar;
+import com.gigtasker.userservice.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Serves avatars from the local {@link AvatarCache} instead of sending clients to S3.
+ * Supports {@code If-None-Match} revalidation and single {@code Range} requests.
+ */
+@RestController
+@RequestMapping("/api/v1/users")
+@RequiredArgsConstructor
+public class AvatarController {
+
+    private final UserService userService;
+    private final AvatarCache avatarCache;
+
+    @GetMapping("/{uuid}/avatar")
+    public void getUserAvatar(@PathVariable UUID uuid, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        String objectKey = userService.getProfileImageKey(uuid).orElse(null);
+        CachedAvatar avatar = objectKey == null ? null : avatarCache.get(objectKey);
+        if (avatar == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String eTag = quoted(avatar.eTag());
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // This URL follows the user's current avatar: let clients keep a copy but revalidate it (a cheap 304)
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long size = avatar.size();
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(eTag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        response.setContentType(avatar.contentType() != null ? avatar.contentType() : "application/octet-stream");
+        response.setContentLengthLong(end - start + 1);
+
+        try {
+            transfer(avatar, start, end - start + 1, response);
+        } catch (NoSuchFileException e) {
+            // Evicted between lookup and open: drop the entry and fetch again once
+            avatarCache.evict(objectKey);
+            CachedAvatar reloaded = avatarCache.get(objectKey);
+            if (reloaded == null || reloaded.size() != size) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                return;
+            }
+            transfer(reloaded, start, end - start + 1, response);
+        }
+    }
+
+    private static void transfer(CachedAvatar avatar, long position, long count, HttpServletResponse response)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(avatar.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) break;
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    /**
+     * Parses a {@code bytes=} range header.
+     *
+     * @return {@code [start, end]} for a single satisfiable range, an empty array when the header should be
+     * ignored (unknown unit, multiple ranges), or {@code null} when it is not satisfiable
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.contains(",")) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) return null;
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+            }
+            return start < size && start <= end ? new long[]{start, end} : null;
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(eTag) || value.equals("W/" + eTag)) return true;
+        }
+        return false;
+    }
+
+    private static String quoted(String eTag) {
+        return eTag.startsWith("\"") ? eTag : "\"" + eTag + "\"";
+    }
+}
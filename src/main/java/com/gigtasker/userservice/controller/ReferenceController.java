@@ -2,12 +2,11 @@ package com.gigtasker.userservice.controller;
 
 import com.gigtasker.userservice.dto.CountryDTO;
 import com.gigtasker.userservice.dto.GenderDTO;
+import com.gigtasker.userservice.dto.RegionDTO;
 import com.gigtasker.userservice.service.ReferenceDataService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 
@@ -23,6 +22,34 @@ public class ReferenceController {
         return ResponseEntity.ok(referenceDataService.getAllCountries());
     }
 
+    @GetMapping(value = "/countries", params = "region")
+    public ResponseEntity<List<CountryDTO>> getCountriesByRegion(@RequestParam String region) {
+        return ResponseEntity.ok(referenceDataService.getCountriesByRegion(region));
+    }
+
+    // Type-ahead, e.g. ?prefix=uni
+    @GetMapping("/countries/search")
+    public ResponseEntity<List<CountryDTO>> searchCountries(@RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(referenceDataService.searchCountries(prefix, limit));
+    }
+
+    @GetMapping("/countries/{isoCode}")
+    public ResponseEntity<CountryDTO> getCountryByIsoCode(@PathVariable String isoCode) {
+        CountryDTO country = referenceDataService.getCountryByIsoCode(isoCode);
+        if (country != null) {
+            return ResponseEntity.ok(country);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Region -> subregion tree
+    @GetMapping("/regions")
+    public ResponseEntity<List<RegionDTO>> getRegions() {
+        return ResponseEntity.ok(referenceDataService.getRegions());
+    }
+
     @GetMapping("/genders")
     public ResponseEntity<List<GenderDTO>> getAllGenders() {
         return ResponseEntity.ok(referenceDataService.getAllGenders());
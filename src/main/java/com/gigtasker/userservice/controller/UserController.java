@@ -1,9 +1,21 @@
 package com.gigtasker.userservice.controller;
 
 import com.gigtasker.common.dto.UserDTO;
+import com.gigtasker.userservice.dto.BulkItemResult;
+import com.gigtasker.userservice.dto.ReconciliationReport;
+import com.gigtasker.userservice.dto.UserChangeFeedEntry;
 import com.gigtasker.userservice.dto.UserUpdateDTO;
+import com.gigtasker.userservice.enums.UserField;
+import com.gigtasker.userservice.exceptions.StorageBusyException;
+import com.gigtasker.userservice.service.UserAdminService;
+import com.gigtasker.userservice.service.UserBulkUpdateService;
+import com.gigtasker.userservice.service.UserEventPublisher;
+import com.gigtasker.userservice.service.UserLookupService;
+import com.gigtasker.userservice.service.UserReconciliationService;
 import com.gigtasker.userservice.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -11,9 +23,14 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/users")
@@ -21,6 +38,11 @@ import java.util.UUID;
 public class UserController {
 
     private final UserService userService;
+    private final UserAdminService userAdminService;
+    private final UserEventPublisher userEventPublisher;
+    private final UserBulkUpdateService userBulkUpdateService;
+    private final UserReconciliationService userReconciliationService;
+    private final UserLookupService userLookupService;
 
     @PostMapping
     public ResponseEntity<UserDTO> createUser(@RequestBody UserDTO userDTO) {
@@ -30,7 +52,18 @@ public class UserController {
 
     @GetMapping("/{id}")
     public ResponseEntity<UserDTO> getUserById(@PathVariable Long id) {
-        UserDTO user = userService.getUserById(id);
+        UserDTO user = userLookupService.getUserById(id);
+        if (user != null) {
+            return ResponseEntity.ok(user);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Sparse fieldset, e.g. ?fields=id,username,profileImageUrl
+    @GetMapping(value = "/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getUserFieldsById(@PathVariable Long id, @RequestParam String fields) {
+        Map<String, Object> user = userLookupService.getUserFieldsById(id, parseFields(fields));
         if (user != null) {
             return ResponseEntity.ok(user);
         } else {
@@ -40,7 +73,7 @@ public class UserController {
 
     @GetMapping("/me")
     public ResponseEntity<UserDTO> getMyProfile() {
-        UserDTO user = userService.getMe();
+        UserDTO user = userLookupService.getMe();
         if (user != null) {
             return ResponseEntity.ok(user);
         } else {
@@ -52,7 +85,23 @@ public class UserController {
 
     @PostMapping("/batch")
     public ResponseEntity<List<UserDTO>> getUsersByIds(@RequestBody List<Long> userIds) {
-        return ResponseEntity.ok(userService.findUsersByIds(userIds));
+        return ResponseEntity.ok(userLookupService.findUsersByIds(userIds));
+    }
+
+    @PostMapping(value = "/batch", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getUserFieldsByIds(@RequestBody List<Long> userIds,
+            @RequestParam String fields) {
+        return ResponseEntity.ok(userLookupService.findUserFieldsByIds(userIds, parseFields(fields)));
+    }
+
+    // Change feed replay: consumers pass the last offset they processed ("0-0" = from the beginning).
+    // Exposes every user's ids, so only admins and service accounts holding ROLE_ADMIN may read it
+    @GetMapping("/events")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<List<UserChangeFeedEntry>> getUserChanges(
+            @RequestParam(defaultValue = "0-0") String after,
+            @RequestParam(defaultValue = "500") int count) {
+        return ResponseEntity.ok(userEventPublisher.readFrom(after, Math.min(count, 5000)));
     }
 
     @PostMapping("/{userId}/promote")
@@ -69,6 +118,25 @@ public class UserController {
         return ResponseEntity.noContent().build();
     }
 
+    // BULK MODERATION (per-id results, partial success is normal)
+    @PostMapping("/bulk/promote")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<List<BulkItemResult<Long>>> promoteUsers(@RequestBody List<Long> userIds) {
+        return ResponseEntity.ok(userAdminService.promoteUsersToAdmin(userIds));
+    }
+
+    @PostMapping("/bulk/disable")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<List<BulkItemResult<Long>>> disableUsers(@RequestBody List<Long> userIds) {
+        return ResponseEntity.ok(userAdminService.disableUsers(userIds));
+    }
+
+    @PostMapping("/bulk/purge")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<List<BulkItemResult<Long>>> purgeUsers(@RequestBody List<Long> userIds) {
+        return ResponseEntity.ok(userAdminService.purgeUsers(userIds));
+    }
+
     @GetMapping
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public ResponseEntity<List<UserDTO>> getAllUsers() {
@@ -78,9 +146,10 @@ public class UserController {
 
     @PostMapping(value = "/{uuid}/avatar", consumes = "multipart/form-data")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
-    public ResponseEntity<UserDTO> uploadUserAvatar(@PathVariable UUID uuid,
+    public CompletableFuture<ResponseEntity<UserDTO>> uploadUserAvatar(@PathVariable UUID uuid,
             @RequestParam("file") MultipartFile file) {
-        return ResponseEntity.ok(userService.updateProfileImage(uuid, file));
+        // Async request: the servlet thread is released while the upload is in flight
+        return userService.updateProfileImage(uuid, file).thenApply(ResponseEntity::ok);
     }
 
     // SELF-SERVICE (My Profile)
@@ -98,4 +167,38 @@ public class UserController {
             @RequestBody UserUpdateDTO updates) {
         return ResponseEntity.ok(userService.updateUser(uuid, updates));
     }
+
+    // BULK PROFILE UPDATE: NDJSON stream (or JSON array) of {"keycloakId": ..., "updates": {...}}
+    @PatchMapping(value = "/bulk", consumes = {"application/x-ndjson", "application/json"})
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<List<BulkItemResult<UUID>>> updateUserProfiles(HttpServletRequest request)
+            throws IOException {
+        return ResponseEntity.ok(userBulkUpdateService.updateUsers(request.getInputStream()));
+    }
+
+    // Keycloak <-> DB drift check; dryRun=false applies the fixes
+    @PostMapping("/reconcile")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<ReconciliationReport> reconcile(@RequestParam(defaultValue = "true") boolean dryRun) {
+        try {
+            return ResponseEntity.ok(userReconciliationService.reconcile(dryRun));
+        } catch (IllegalStateException ex) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage());
+        }
+    }
+
+    @ExceptionHandler(StorageBusyException.class)
+    public ResponseEntity<Map<String, Object>> handleStorageBusy(StorageBusyException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    private static Set<UserField> parseFields(String fields) {
+        try {
+            return UserField.parse(fields);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+    }
 }
@@ -0,0 +1,6 @@
+package com.gigtasker.userservice.dto;
+
+public record AvailabilityResponse(
+        Boolean usernameAvailable,
+        Boolean emailAvailable
+) {}
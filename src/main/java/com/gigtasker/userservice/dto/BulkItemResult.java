@@ -0,0 +1,21 @@
+package com.gigtasker.userservice.dto;
+
+import com.gigtasker.userservice.enums.BulkItemStatus;
+
+public record BulkItemResult<K>(
+        K id,
+        BulkItemStatus status,
+        String message
+) {
+    public static <K> BulkItemResult<K> ok(K id) {
+        return new BulkItemResult<>(id, BulkItemStatus.OK, null);
+    }
+
+    public static <K> BulkItemResult<K> notFound(K id) {
+        return new BulkItemResult<>(id, BulkItemStatus.NOT_FOUND, "User not found");
+    }
+
+    public static <K> BulkItemResult<K> failed(K id, String message) {
+        return new BulkItemResult<>(id, BulkItemStatus.FAILED, message);
+    }
+}
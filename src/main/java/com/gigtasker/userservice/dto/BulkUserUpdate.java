@@ -0,0 +1,9 @@
+package com.gigtasker.userservice.dto;
+
+import java.util.UUID;
+
+// One line of a bulk profile update (NDJSON or a JSON array element)
+public record BulkUserUpdate(
+        UUID keycloakId,
+        UserUpdateDTO updates
+) {}
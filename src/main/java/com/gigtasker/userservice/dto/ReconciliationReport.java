@@ -0,0 +1,11 @@
+package com.gigtasker.userservice.dto;
+
+// Outcome of one Keycloak <-> Postgres reconciliation pass
+public record ReconciliationReport(
+        boolean dryRun,
+        int checked,
+        int drifted,
+        int corrected,
+        int failed,
+        int missingInDatabase
+) {}
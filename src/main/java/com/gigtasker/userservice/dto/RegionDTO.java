@@ -0,0 +1,11 @@
+package com.gigtasker.userservice.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+public record RegionDTO(
+        Long id,
+        String name,
+        String macroRegion,
+        List<SubRegionDTO> subRegions
+) implements Serializable {}
@@ -0,0 +1,8 @@
+package com.gigtasker.userservice.dto;
+
+import java.io.Serializable;
+
+public record SubRegionDTO(
+        Long id,
+        String name
+) implements Serializable {}
@@ -0,0 +1,17 @@
+package com.gigtasker.userservice.dto;
+
+import com.gigtasker.userservice.enums.UserChangeType;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+// One row of user_audit_log. 'details' is whatever changed (field -> new value, roles before/after, ...)
+public record UserAuditEntry(
+        Instant occurredAt,
+        UserChangeType action,
+        Long userId,
+        UUID keycloakId,
+        String actor,
+        Map<String, Object> details
+) {}
@@ -0,0 +1,9 @@
+package com.gigtasker.userservice.dto;
+
+public record UserChangeFeedEntry(
+        String offset,
+        String type,
+        Long userId,
+        String keycloakId,
+        String occurredAt
+) {}
@@ -0,0 +1,18 @@
+package com.gigtasker.userservice.dto;
+
+import com.gigtasker.userservice.enums.UserChangeType;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Published in-process by the services, forwarded to the Redis stream after the transaction commits
+public record UserChangedEvent(
+        UserChangeType type,
+        Long userId,
+        UUID keycloakId,
+        Instant occurredAt
+) {
+    public static UserChangedEvent of(UserChangeType type, Long userId, UUID keycloakId) {
+        return new UserChangedEvent(type, userId, keycloakId, Instant.now());
+    }
+}
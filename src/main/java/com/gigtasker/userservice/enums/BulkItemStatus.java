@@ -0,0 +1,7 @@
+package com.gigtasker.userservice.enums;
+
+public enum BulkItemStatus {
+    OK,
+    NOT_FOUND,
+    FAILED
+}
@@ -0,0 +1,10 @@
+package com.gigtasker.userservice.enums;
+
+public enum UserChangeType {
+    CREATED,
+    UPDATED,
+    AVATAR_CHANGED,
+    ROLES_CHANGED,
+    DELETED,
+    PURGED
+}
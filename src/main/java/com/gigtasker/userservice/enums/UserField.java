@@ -0,0 +1,54 @@
+package com.gigtasker.userservice.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Fields a caller can pick with {@code ?fields=} on the user read endpoints.
+ * Names match the {@code UserDTO} properties; {@code path} is what we select in JPQL
+ * ({@code u} = user, {@code g} = gender, {@code c} = country). Roles come from a separate query.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum UserField {
+    ID("id", "u.id"),
+    KEYCLOAK_ID("keycloakId", "u.keycloakId"),
+    USERNAME("username", "u.username"),
+    EMAIL("email", "u.email"),
+    FIRST_NAME("firstName", "u.firstName"),
+    LAST_NAME("lastName", "u.lastName"),
+    DATE_OF_BIRTH("dateOfBirth", "u.dateOfBirth"),
+    PROFILE_IMAGE_URL("profileImageUrl", "u.profileImageUrl"),
+    GENDER("gender", "g.description"),
+    COUNTRY("country", "c.name"),
+    ROLES("roles", null);
+
+    private final String jsonName;
+    private final String path;
+
+    /**
+     * Parses a comma-separated list like {@code "id,username,profileImageUrl"}. {@code id} is always included.
+     *
+     * @throws IllegalArgumentException for unknown field names
+     */
+    public static Set<UserField> parse(String fields) {
+        Set<UserField> result = EnumSet.of(ID);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) continue;
+            result.add(fromJsonName(trimmed));
+        }
+        return result;
+    }
+
+    private static UserField fromJsonName(String name) {
+        for (UserField field : values()) {
+            if (field.jsonName.equalsIgnoreCase(name)) return field;
+        }
+        throw new IllegalArgumentException("Unknown field '" + name.toLowerCase(Locale.ROOT) + "'");
+    }
+}
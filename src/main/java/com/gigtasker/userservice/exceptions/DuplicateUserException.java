@@ -0,0 +1,7 @@
+package com.gigtasker.userservice.exceptions;
+
+public class DuplicateUserException extends RuntimeException {
+    public DuplicateUserException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.gigtasker.userservice.exceptions;
+
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.gigtasker.userservice.exceptions;
+
+public class IdempotencyKeyReuseException extends RuntimeException {
+    public IdempotencyKeyReuseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.gigtasker.userservice.exceptions;
+
+public class StorageBusyException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public StorageBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
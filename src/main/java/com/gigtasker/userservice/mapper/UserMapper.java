@@ -3,6 +3,7 @@ package com.gigtasker.userservice.mapper;
 import com.gigtasker.common.dto.UserDTO;
 import com.gigtasker.userservice.entity.Role;
 import com.gigtasker.userservice.entity.User;
+import com.gigtasker.userservice.repository.UserRepository;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
@@ -19,6 +20,18 @@ public interface UserMapper {
     @Mapping(target = "roles", source = "roles", qualifiedByName = "mapRoleDescriptions")
     UserDTO toDTO(User user);
 
+    // Same as toDTO(User), with gender/country names passed in so lazy references aren't initialized
+    @Mapping(target = "gender", source = "genderName")
+    @Mapping(target = "country", source = "countryName")
+    @Mapping(target = "roles", source = "user.roles", qualifiedByName = "mapRoleDescriptions")
+    UserDTO toDTO(User user, String genderName, String countryName);
+
+    // Built without loading the entity: names come from the reference index, roles from their own query
+    @Mapping(target = "gender", source = "gender")
+    @Mapping(target = "country", source = "country")
+    @Mapping(target = "roles", source = "roles")
+    UserDTO toDTO(UserRepository.UserProfileRow row, String gender, String country, List<String> roles);
+
     @Named("mapRoleDescriptions")
     static List<String> mapRoleDescriptions(Set<Role> roles) {
         if (roles == null || roles.isEmpty()) {
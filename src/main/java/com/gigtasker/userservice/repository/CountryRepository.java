@@ -2,6 +2,7 @@ package com.gigtasker.userservice.repository;
 
 import com.gigtasker.userservice.entity.Country;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,4 +13,8 @@ public interface CountryRepository extends JpaRepository<Country, Long> {
     List<Country> findAllByOrderByNameAsc();
     List<Country> findAllByOrderByRegionAsc();
     Optional<Country> findByIsoCode(String isoCode);
+
+    // One query for the reference index instead of a region select per country
+    @Query("SELECT c FROM Country c LEFT JOIN FETCH c.region")
+    List<Country> findAllWithRegion();
 }
@@ -2,8 +2,14 @@ package com.gigtasker.userservice.repository;
 
 import com.gigtasker.userservice.entity.Region;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface RegionRepository extends JpaRepository<Region,Long> {
+
+    @Query("SELECT DISTINCT r FROM Region r LEFT JOIN FETCH r.subRegions")
+    List<Region> findAllWithSubRegions();
 }
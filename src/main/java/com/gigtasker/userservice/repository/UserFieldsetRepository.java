@@ -0,0 +1,70 @@
+package com.gigtasker.userservice.repository;
+
+import com.gigtasker.userservice.enums.RoleType;
+import com.gigtasker.userservice.enums.UserField;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Sparse reads of users: selects only the requested columns and only joins gender/country/roles
+ * when those fields were asked for. Results are plain maps keyed by the {@code UserDTO} property names.
+ */
+@Repository
+public class UserFieldsetRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public List<Map<String, Object>> findByIds(Collection<Long> ids, Set<UserField> fields) {
+        if (ids.isEmpty()) return List.of();
+
+        String select = fields.stream()
+                .filter(f -> f.getPath() != null)
+                .map(f -> f.getPath() + " AS " + f.getJsonName())
+                .collect(Collectors.joining(", "));
+
+        StringBuilder jpql = new StringBuilder("SELECT ").append(select).append(" FROM User u");
+        if (fields.contains(UserField.GENDER)) jpql.append(" LEFT JOIN u.gender g");
+        if (fields.contains(UserField.COUNTRY)) jpql.append(" LEFT JOIN u.country c");
+        jpql.append(" WHERE u.id IN :ids");
+
+        List<Tuple> rows = entityManager.createQuery(jpql.toString(), Tuple.class)
+                .setParameter("ids", ids)
+                .getResultList();
+
+        Map<Long, List<String>> roles = fields.contains(UserField.ROLES) ? findRoleNames(ids) : Map.of();
+
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            Map<String, Object> user = new LinkedHashMap<>();
+            for (UserField field : fields) {
+                if (field == UserField.ROLES) {
+                    user.put(field.getJsonName(), roles.getOrDefault((Long) row.get(UserField.ID.getJsonName()), List.of()));
+                } else {
+                    user.put(field.getJsonName(), row.get(field.getJsonName()));
+                }
+            }
+            result.add(user);
+        }
+        return result;
+    }
+
+    private Map<Long, List<String>> findRoleNames(Collection<Long> ids) {
+        List<Tuple> rows = entityManager.createQuery(
+                        "SELECT u.id AS id, r.name AS name FROM User u JOIN u.roles r WHERE u.id IN :ids", Tuple.class)
+                .setParameter("ids", ids)
+                .getResultList();
+
+        Map<Long, List<String>> roles = new HashMap<>();
+        for (Tuple row : rows) {
+            roles.computeIfAbsent(row.get("id", Long.class), k -> new ArrayList<>())
+                    .add(row.get("name", RoleType.class).name());
+        }
+        return roles;
+    }
+}
@@ -1,19 +1,65 @@
 package com.gigtasker.userservice.repository;
 
 import com.gigtasker.userservice.entity.User;
+import com.gigtasker.userservice.enums.RoleType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    // Fields compared against Keycloak by the reconciliation job
+    interface UserSyncState {
+        Long getId();
+        UUID getKeycloakId();
+        String getUsername();
+        String getEmail();
+        String getFirstName();
+        String getLastName();
+        boolean getDeleted();
+        boolean getAdmin();
+    }
+
+    // Reconciliation digest computed by Postgres, so unchanged users never leave the database as full rows
+    interface UserSyncDigest {
+        UUID getKeycloakId();
+        long getDigest();
+    }
+
+    // Just enough to drive Keycloak calls without loading entities
+    interface UserKeys {
+        Long getId();
+        UUID getKeycloakId();
+    }
+
+    // The users-table half of a UserDTO; covered by idx_users_keycloak_id_profile, so /me is an index-only scan
+    interface UserProfileRow {
+        Long getId();
+        UUID getKeycloakId();
+        String getUsername();
+        String getEmail();
+        String getFirstName();
+        String getLastName();
+        LocalDate getDateOfBirth();
+        String getProfileImageUrl();
+        Long getGenderId();
+        Long getCountryId();
+    }
+
     Optional<User> findByEmail(String email);
     List<User> findByIdIn(List<Long> ids);
 
@@ -35,4 +81,131 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Set<UUID> findAllKeycloakIds();
 
     Optional<User> findByKeycloakId(UUID keycloakId);
+
+    @Query("""
+            SELECT u.id AS id, u.keycloakId AS keycloakId, u.username AS username, u.email AS email,
+                   u.firstName AS firstName, u.lastName AS lastName, u.dateOfBirth AS dateOfBirth,
+                   u.profileImageUrl AS profileImageUrl, u.gender.id AS genderId, u.country.id AS countryId
+            FROM User u WHERE u.keycloakId = :keycloakId
+            """)
+    Optional<UserProfileRow> findProfileRowByKeycloakId(UUID keycloakId);
+
+    @Query("SELECT r.name FROM User u JOIN u.roles r WHERE u.id = :userId")
+    List<RoleType> findRoleNamesByUserId(Long userId);
+
+    @Query("SELECT u.profileImageUrl FROM User u WHERE u.keycloakId = :keycloakId")
+    Optional<String> findProfileImageKeyByKeycloakId(UUID keycloakId);
+
+    // Profile updates: user, its eager FKs and roles in one SELECT (the DTO we return needs all of them)
+    @EntityGraph(attributePaths = {"gender", "country", "country.region", "roles"})
+    @Query("SELECT u FROM User u WHERE u.keycloakId = :keycloakId")
+    Optional<User> findForUpdateByKeycloakId(UUID keycloakId);
+
+    // --- Retention (native on purpose: soft-deleted rows are hidden from JPQL by @SQLRestriction) ---
+
+    @Modifying
+    @Query(value = "UPDATE users SET deleted_at = now() WHERE is_deleted = true AND deleted_at IS NULL",
+            nativeQuery = true)
+    int stampMissingDeletedAt();
+
+    // SKIP LOCKED lets several instances run the job without fighting over the same chunk
+    @Query(value = """
+            SELECT id FROM users
+            WHERE is_deleted = true AND deleted_at < :cutoff
+            ORDER BY id LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<Long> findPurgeableIds(Instant cutoff, int limit);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO users_archive (id, keycloak_id, username, email, first_name, last_name, date_of_birth,
+                                       gender_id, country_id, profile_image_url, deleted_at)
+            SELECT id, keycloak_id, username, email, first_name, last_name, date_of_birth,
+                   gender_id, country_id, profile_image_url, deleted_at
+            FROM users WHERE id IN (:ids)
+            ON CONFLICT (id) DO NOTHING
+            """, nativeQuery = true)
+    int archiveByIdIn(Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM users_roles WHERE user_id IN (:ids)", nativeQuery = true)
+    int removeAllRolesByIdIn(Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM users WHERE id IN (:ids)", nativeQuery = true)
+    int hardDeleteByIdIn(Collection<Long> ids);
+
+    // --- Bulk admin operations ---
+
+    @Query(value = "SELECT id, keycloak_id AS keycloakId FROM users WHERE id IN (:ids) AND is_deleted = false",
+            nativeQuery = true)
+    List<UserKeys> findLiveKeysByIdIn(Collection<Long> ids);
+
+    @Query(value = "SELECT id, keycloak_id AS keycloakId FROM users WHERE id IN (:ids)", nativeQuery = true)
+    List<UserKeys> findAllKeysByIdIn(Collection<Long> ids);
+
+    @Query(value = "SELECT id, keycloak_id AS keycloakId FROM users WHERE keycloak_id IN (:keycloakIds) AND is_deleted = false",
+            nativeQuery = true)
+    List<UserKeys> findLiveKeysByKeycloakIdIn(Collection<UUID> keycloakIds);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO users_roles (user_id, role_id)
+            SELECT id, :roleId FROM users WHERE id IN (:ids)
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    int addRoleToUsers(Collection<Long> ids, Long roleId);
+
+    @Modifying
+    @Query(value = "DELETE FROM users_roles WHERE role_id = :roleId AND user_id IN (:ids)", nativeQuery = true)
+    int removeRoleFromUsers(Collection<Long> ids, Long roleId);
+
+    @Modifying
+    @Query(value = "UPDATE users SET is_deleted = true, deleted_at = now() WHERE id IN (:ids) AND is_deleted = false",
+            nativeQuery = true)
+    int softDeleteByIdIn(Collection<Long> ids);
+
+    // --- Reconciliation (soft-deleted rows included: their Keycloak account must stay disabled) ---
+
+    // Must stay in step with UserReconciliationService.digest: first 64 bits of md5 over the normalized fields
+    @Query(value = """
+            SELECT u.keycloak_id AS keycloakId,
+                   ('x' || left(md5(lower(trim(u.email)) || chr(31) || coalesce(u.first_name, '') || chr(31)
+                       || coalesce(u.last_name, '') || chr(31) || (NOT u.is_deleted)::text || chr(31)
+                       || (EXISTS (SELECT 1 FROM users_roles ur JOIN roles r ON r.id = ur.role_id
+                                   WHERE ur.user_id = u.id AND r.name = 'ROLE_ADMIN'))::text), 16))::bit(64)::bigint
+                       AS digest
+            FROM users u WHERE u.keycloak_id IN (:keycloakIds)
+            """, nativeQuery = true)
+    List<UserSyncDigest> findSyncDigestsByKeycloakIdIn(Collection<UUID> keycloakIds);
+
+    @Query(value = """
+            SELECT u.id, u.keycloak_id AS keycloakId, u.username, u.email, u.first_name AS firstName, u.last_name AS lastName,
+                   u.is_deleted AS deleted,
+                   EXISTS (SELECT 1 FROM users_roles ur JOIN roles r ON r.id = ur.role_id
+                           WHERE ur.user_id = u.id AND r.name = 'ROLE_ADMIN') AS admin
+            FROM users u WHERE u.keycloak_id IN (:keycloakIds)
+            """, nativeQuery = true)
+    List<UserSyncState> findSyncStateByKeycloakIdIn(Collection<UUID> keycloakIds);
+
+    // --- Identity index (streamed with a fetch size, includes soft-deleted rows: the unique constraints do too) ---
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query(value = "SELECT lower(username) FROM users", nativeQuery = true)
+    Stream<String> streamAllUsernames();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query(value = "SELECT lower(email) FROM users", nativeQuery = true)
+    Stream<String> streamAllEmails();
+
+    @Query(value = "SELECT count(*) FROM users", nativeQuery = true)
+    long countIncludingDeleted();
+
+    // Exact matches so the unique indexes on username/email are used
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM users WHERE username IN (:values))", nativeQuery = true)
+    boolean existsByUsernameIn(Collection<String> values);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM users WHERE email IN (:values))", nativeQuery = true)
+    boolean existsByEmailIn(Collection<String> values);
 }
@@ -0,0 +1,151 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.exceptions.RateLimitExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket admission control for the public /api/v1/auth endpoints, keyed by client IP and by username.
+ * <p>
+ * Implemented as GCRA (a token bucket stored as a single "theoretical arrival time"), so each bucket is one
+ * {@link AtomicLong} updated with CAS and no locks. With {@code app.rate-limit.backend=redis} the same algorithm
+ * runs as a Lua script so limits hold across instances; if Redis is unavailable we fall back to the local buckets.
+ * <p>
+ * The client IP is the one the api-gateway forwards ({@code server.forward-headers-strategy=native}); without it
+ * every caller would share the gateway's bucket.
+ */
+@Slf4j
+@Service
+public class AuthRateLimiter {
+
+    private static final int SWEEP_THRESHOLD = 100_000;
+
+    private static final DefaultRedisScript<Long> GCRA_SCRIPT = new DefaultRedisScript<>("""
+            local interval = tonumber(ARGV[1])
+            local tolerance = tonumber(ARGV[2])
+            local t = redis.call('TIME')
+            local now = tonumber(t[1]) * 1000000 + tonumber(t[2])
+            local tat = tonumber(redis.call('GET', KEYS[1]) or now)
+            if tat < now then tat = now end
+            local newTat = tat + interval
+            local allowAt = newTat - tolerance
+            if allowAt > now then return allowAt - now end
+            redis.call('SET', KEYS[1], newTat, 'PX', math.ceil((newTat - now) / 1000) + 1)
+            return 0
+            """, Long.class);
+
+    private record Limit(long intervalNanos, long toleranceNanos) {}
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private final boolean enabled;
+    private final boolean useRedis;
+    private final Limit ipLimit;
+    private final Limit usernameLimit;
+
+    public AuthRateLimiter(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry,
+                           @Value("${app.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${app.rate-limit.backend:local}") String backend,
+                           @Value("${app.rate-limit.ip.per-minute:60}") int ipPerMinute,
+                           @Value("${app.rate-limit.ip.burst:20}") int ipBurst,
+                           @Value("${app.rate-limit.username.per-minute:10}") int usernamePerMinute,
+                           @Value("${app.rate-limit.username.burst:5}") int usernameBurst) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.useRedis = "redis".equalsIgnoreCase(backend);
+        this.ipLimit = limit(ipPerMinute, ipBurst);
+        this.usernameLimit = limit(usernamePerMinute, usernameBurst);
+    }
+
+    /**
+     * Takes one token from the IP bucket and, if given, the username bucket.
+     *
+     * @throws RateLimitExceededException when either bucket is empty
+     */
+    public void acquire(String endpoint, String clientIp, String username) {
+        if (!enabled) return;
+
+        check(endpoint, "ip", clientIp, ipLimit);
+        if (StringUtils.isNotBlank(username)) {
+            check(endpoint, "username", username.toLowerCase(Locale.ROOT), usernameLimit);
+        }
+    }
+
+    private void check(String endpoint, String keyType, String key, Limit limit) {
+        String bucketKey = "ratelimit:auth:" + keyType + ":" + key;
+        long waitNanos = useRedis ? tryRedis(bucketKey, limit) : tryLocal(bucketKey, limit);
+
+        if (waitNanos > 0) {
+            meterRegistry.counter("auth.ratelimit.rejected", "endpoint", endpoint, "key", keyType).increment();
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+            throw new RateLimitExceededException("Too many requests, retry later", retryAfter);
+        }
+    }
+
+    // @return 0 when admitted, otherwise nanos until the next token
+    private long tryLocal(String key, Limit limit) {
+        long now = System.nanoTime();
+        AtomicLong tat = buckets.get(key);
+        if (tat == null) {
+            tat = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            sweepIfNeeded(now);
+        }
+
+        while (true) {
+            long current = tat.get();
+            long newTat = Math.max(current, now) + limit.intervalNanos();
+            long allowAt = newTat - limit.toleranceNanos();
+            if (allowAt > now) {
+                return allowAt - now;
+            }
+            if (tat.compareAndSet(current, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    private long tryRedis(String key, Limit limit) {
+        try {
+            Long waitMicros = redisTemplate.execute(GCRA_SCRIPT, List.of(key),
+                    String.valueOf(TimeUnit.NANOSECONDS.toMicros(limit.intervalNanos())),
+                    String.valueOf(TimeUnit.NANOSECONDS.toMicros(limit.toleranceNanos())));
+            return waitMicros == null ? 0 : TimeUnit.MICROSECONDS.toNanos(waitMicros);
+        } catch (Exception e) {
+            log.warn("Redis rate limiter unavailable, using local buckets: {}", e.getMessage());
+            return tryLocal(key, limit);
+        }
+    }
+
+    // A bucket whose TAT is in the past is full again, dropping it is the same as keeping it
+    private void sweepIfNeeded(long now) {
+        if (buckets.size() < SWEEP_THRESHOLD || !sweeping.compareAndSet(false, true)) return;
+        try {
+            buckets.values().removeIf(tat -> tat.get() < now);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static Limit limit(int perMinute, int burst) {
+        long interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+        return new Limit(interval, interval * Math.max(1, burst));
+    }
+}
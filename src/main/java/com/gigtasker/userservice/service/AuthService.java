@@ -4,30 +4,45 @@ import com.gigtasker.common.dto.UserDTO;
 import com.gigtasker.userservice.dto.LoginRequest;
 import com.gigtasker.userservice.dto.RefreshRequest;
 import com.gigtasker.userservice.dto.RegistrationRequest;
+import com.gigtasker.userservice.dto.UserChangedEvent;
 import com.gigtasker.userservice.entity.Role;
 import com.gigtasker.userservice.entity.User;
 import com.gigtasker.userservice.enums.RoleType;
+import com.gigtasker.userservice.enums.UserChangeType;
+import com.gigtasker.userservice.exceptions.DuplicateUserException;
 import com.gigtasker.userservice.mapper.UserMapper;
 import com.gigtasker.userservice.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import com.gigtasker.userservice.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClient;
 
 import javax.security.auth.login.LoginException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AuthService {
 
@@ -35,6 +50,19 @@ public class AuthService {
     private final RoleService roleService;
     private final KeycloakService keycloakService;
     private final UserMapper userMapper;
+    private final UserIdentityIndex userIdentityIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Concurrent refreshes of the same token share one Keycloak call (keyed by the token's hash)
+    private final SingleFlight<String, Map<String, Object>> refreshFlights;
+
+    private final Counter internalIdSyncFailures;
+
+    @Value("${app.auth.internal-id-sync.max-attempts:5}")
+    private int internalIdSyncMaxAttempts;
+
+    @Value("${app.auth.internal-id-sync.backoff:1s}")
+    private Duration internalIdSyncBackoff;
 
     @Value("${keycloak.bot.server-url}")
     private String keycloakUrl;
@@ -44,8 +72,33 @@ public class AuthService {
 
     private final RestClient restClient = RestClient.builder().build();
 
+    public AuthService(UserRepository userRepository, RoleService roleService, KeycloakService keycloakService,
+                       UserMapper userMapper, UserIdentityIndex userIdentityIndex,
+                       ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                       @Value("${app.auth.refresh.coalesce-window:2s}") Duration coalesceWindow) {
+        this.userRepository = userRepository;
+        this.roleService = roleService;
+        this.keycloakService = keycloakService;
+        this.userMapper = userMapper;
+        this.userIdentityIndex = userIdentityIndex;
+        this.eventPublisher = eventPublisher;
+
+        Counter coalesced = Counter.builder("auth.refresh.coalesced")
+                .description("Refresh requests answered with another request's Keycloak result")
+                .register(meterRegistry);
+        this.refreshFlights = new SingleFlight<>(coalesceWindow, coalesced::increment);
+        this.internalIdSyncFailures = Counter.builder("auth.internal-id.sync.failures")
+                .description("Registrations whose internal id never reached Keycloak")
+                .register(meterRegistry);
+    }
+
     @Transactional
     public UserDTO register(RegistrationRequest req) {
+        // 0. Cheap duplicate check before we create anything in Keycloak
+        if (userIdentityIndex.isTaken(req.username(), req.email())) {
+            throw new DuplicateUserException("Username or email is already registered");
+        }
+
         // 1. Create Keycloak user representation
         UserRepresentation kcUser = keycloakService.getKeyCloakUserRepresentationObject(req);
 
@@ -75,19 +128,52 @@ public class AuthService {
                 .build();
 
         // 5a. Save and Flush to generate the Long ID
-        User savedUser = userRepository.save(newUser);
+        User savedUser;
+        try {
+            savedUser = userRepository.save(newUser);
+        } catch (DataIntegrityViolationException ex) {
+            // Lost a race with another registration: don't leave an orphaned Keycloak account behind
+            log.warn("Registration for {} hit a unique constraint, removing Keycloak user {}", req.username(), keycloakId);
+            keycloakService.removeUser(keycloakId);
+            userIdentityIndex.record(req.username(), req.email());
+            throw new DuplicateUserException("Username or email is already registered");
+        }
+        userIdentityIndex.record(req.username(), req.email());
+        eventPublisher.publishEvent(UserChangedEvent.of(UserChangeType.CREATED, savedUser.getId(), keycloakId));
 
         // 6. SYNC BACK: Update Keycloak with the Internal Long ID
         // This allows us to map the claim 'internal_id' in Keycloak tokens
-        keycloakService.updateUserAttribute(
-                keycloakId,
-                "internal_user_db_id",
-                String.valueOf(savedUser.getId()) // Convert Long to String for Keycloak
-        );
+        // Only once the row is committed (a rolled-back id must never reach a token), retried if Keycloak fails
+        Long internalId = savedUser.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                syncInternalId(keycloakId, internalId, 1);
+            }
+        });
 
         return userMapper.toDTO(savedUser);
     }
 
+    // Queued through the write coalescer; a failed attempt is retried with exponential backoff
+    private void syncInternalId(UUID keycloakId, Long internalId, int attempt) {
+        keycloakService.updateUserAttributeAsync(keycloakId, "internal_user_db_id", String.valueOf(internalId))
+                .whenComplete((ignored, e) -> {
+                    if (e == null) return;
+                    if (attempt >= internalIdSyncMaxAttempts) {
+                        internalIdSyncFailures.increment();
+                        log.error("Gave up syncing internal id {} to Keycloak for user {} after {} attempt(s)",
+                                internalId, keycloakId, attempt, e);
+                        return;
+                    }
+                    long delayMillis = internalIdSyncBackoff.toMillis() << (attempt - 1);
+                    log.warn("Syncing internal id to Keycloak for user {} failed (attempt {}), retrying in {} ms",
+                            keycloakId, attempt, delayMillis);
+                    CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS)
+                            .execute(() -> syncInternalId(keycloakId, internalId, attempt + 1));
+                });
+    }
+
     public Map<String, Object> login(LoginRequest req) throws LoginException {
 
         MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
@@ -107,7 +193,24 @@ public class AuthService {
         body.add("grant_type", "refresh_token");
         body.add("refresh_token", req.refreshToken());
 
-        return callKeycloakTokenEndpoint(body);
+        try {
+            return refreshFlights.execute(sha256(req.refreshToken()), () -> callKeycloakTokenEndpoint(body));
+        } catch (LoginException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new LoginException("Invalid Login Credentials " + ex.getMessage());
+        }
+    }
+
+    // Never keep raw refresh tokens around as map keys
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     private Map<String, Object> callKeycloakTokenEndpoint(MultiValueMap<String, String> formData) throws LoginException {
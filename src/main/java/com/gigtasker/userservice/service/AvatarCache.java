@@ -0,0 +1,204 @@
+package com.gigtasker.userservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Bounded on-disk LRU of avatar objects, keyed by S3 object key.
+ * <p>
+ * A miss downloads the object straight into the cache directory (concurrent misses for the same key share one
+ * download) and then it is served from disk. Entries older than {@code app.avatar-cache.ttl} are fetched again,
+ * which only matters for pre-content-addressed keys that were overwritten in place; the hash keys never change.
+ */
+@Slf4j
+@Service
+public class AvatarCache {
+
+    public record CachedAvatar(String objectKey, Path file, long size, String eTag, String contentType,
+                               long cachedAtNanos) {}
+
+    private final S3AsyncClient s3AsyncClient;
+    private final Path directory;
+    private final long maxBytes;
+
+    // Access-ordered: iteration starts at the least recently used entry. Guarded by this.
+    private final LinkedHashMap<String, CachedAvatar> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final Map<String, CompletableFuture<CachedAvatar>> downloads = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    @Value("${cloud.aws.s3.bucket}")
+    private String bucketName;
+
+    @Value("${app.avatar-cache.ttl:10m}")
+    private Duration ttl;
+
+    public AvatarCache(S3AsyncClient s3AsyncClient, MeterRegistry meterRegistry,
+                       @Value("${app.avatar-cache.dir:${java.io.tmpdir}/gigtasker-avatars}") Path directory,
+                       @Value("${app.avatar-cache.max-size:256MB}") DataSize maxSize) throws IOException {
+        this.s3AsyncClient = s3AsyncClient;
+        this.directory = directory;
+        this.maxBytes = maxSize.toBytes();
+        this.hits = meterRegistry.counter("avatar.cache.hits");
+        this.misses = meterRegistry.counter("avatar.cache.misses");
+        this.evictions = meterRegistry.counter("avatar.cache.evictions");
+        meterRegistry.gauge("avatar.cache.bytes", this, AvatarCache::sizeInBytes);
+
+        Files.createDirectories(directory);
+        // Leftovers from a previous run have no ETag on record: start empty
+        try (Stream<Path> stale = Files.list(directory)) {
+            stale.forEach(AvatarCache::deleteQuietly);
+        }
+    }
+
+    /**
+     * Returns the cached copy of {@code objectKey}, downloading it first on a miss.
+     *
+     * @return the cached avatar, or {@code null} if the object does not exist in S3
+     */
+    public CachedAvatar get(String objectKey) {
+        CachedAvatar cached = lookup(objectKey);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        try {
+            return fetch(objectKey).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NoSuchKeyException) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    public synchronized void evict(String objectKey) {
+        CachedAvatar removed = entries.remove(objectKey);
+        if (removed != null) {
+            totalBytes -= removed.size();
+            deleteQuietly(removed.file());
+        }
+    }
+
+    private synchronized CachedAvatar lookup(String objectKey) {
+        CachedAvatar cached = entries.get(objectKey);
+        if (cached != null && System.nanoTime() - cached.cachedAtNanos() > ttl.toNanos()) {
+            // Not deleting the file yet: the download that replaces it moves a new file over it (or deletes it
+            // if the download fails)
+            entries.remove(objectKey);
+            totalBytes -= cached.size();
+            return null;
+        }
+        return cached;
+    }
+
+    private CompletableFuture<CachedAvatar> fetch(String objectKey) {
+        CompletableFuture<CachedAvatar> mine = new CompletableFuture<>();
+        CompletableFuture<CachedAvatar> existing = downloads.putIfAbsent(objectKey, mine);
+        if (existing != null) {
+            return existing;
+        }
+
+        download(objectKey).whenComplete((avatar, error) -> {
+            downloads.remove(objectKey, mine);
+            if (error != null) {
+                mine.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            } else {
+                mine.complete(avatar);
+            }
+        });
+        return mine;
+    }
+
+    private CompletableFuture<CachedAvatar> download(String objectKey) {
+        Path target = directory.resolve(objectKey.replaceAll("[^A-Za-z0-9._-]", "_"));
+        Path partial = directory.resolve(UUID.randomUUID() + ".part");
+        GetObjectRequest request = GetObjectRequest.builder().bucket(bucketName).key(objectKey).build();
+
+        return s3AsyncClient.getObject(request, AsyncResponseTransformer.toFile(partial))
+                .thenApply(response -> {
+                    try {
+                        // Readers holding the old file keep reading it; new readers open the new one
+                        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    CachedAvatar avatar = new CachedAvatar(objectKey, target, response.contentLength(),
+                            response.eTag(), response.contentType(), System.nanoTime());
+                    admit(avatar);
+                    return avatar;
+                })
+                .whenComplete((avatar, error) -> {
+                    if (error != null) {
+                        deleteQuietly(partial);
+                        discardIfUntracked(objectKey, target);
+                    }
+                });
+    }
+
+    // A failed re-fetch of an expired entry would otherwise leave its file on disk, outside totalBytes
+    private synchronized void discardIfUntracked(String objectKey, Path file) {
+        CachedAvatar current = entries.get(objectKey);
+        if (current == null || !current.file().equals(file)) {
+            deleteQuietly(file);
+        }
+    }
+
+    private synchronized void admit(CachedAvatar avatar) {
+        CachedAvatar previous = entries.put(avatar.objectKey(), avatar);
+        if (previous != null) {
+            totalBytes -= previous.size();
+        }
+        totalBytes += avatar.size();
+
+        Iterator<CachedAvatar> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && entries.size() > 1) {
+            CachedAvatar victim = eldest.next();
+            eldest.remove();
+            totalBytes -= victim.size();
+            deleteQuietly(victim.file());
+            evictions.increment();
+        }
+    }
+
+    private synchronized long sizeInBytes() {
+        return totalBytes;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete cached avatar {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.gigtasker.userservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Deletes avatar objects that no user has referenced for {@code app.avatar-cleanup.grace}.
+ * <p>
+ * Reference counts live in {@code avatar_objects} and are kept by a trigger on {@code users}. Each chunk locks
+ * its rows ({@code FOR UPDATE SKIP LOCKED}) while deleting from S3, so an upload re-referencing one of them
+ * waits for this transaction and then re-creates the row; {@link StorageService#uploadProfileImageAsync}
+ * notices the missing object and writes it back.
+ */
+@Slf4j
+@Service
+public class AvatarCleanupService {
+
+    private static final String SELECT_ORPHANS = """
+            SELECT object_key FROM avatar_objects
+            WHERE ref_count = 0 AND orphaned_at < ?
+            ORDER BY orphaned_at
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageService storageService;
+    private final AvatarCache avatarCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter deleted;
+    private final Counter failures;
+
+    @Value("${app.avatar-cleanup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.avatar-cleanup.grace:24h}")
+    private Duration grace;
+
+    @Value("${app.avatar-cleanup.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${app.avatar-cleanup.max-chunks-per-run:50}")
+    private int maxChunksPerRun;
+
+    public AvatarCleanupService(JdbcTemplate jdbcTemplate, StorageService storageService, AvatarCache avatarCache,
+                                PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storageService = storageService;
+        this.avatarCache = avatarCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deleted = meterRegistry.counter("avatar.objects.deleted");
+        this.failures = meterRegistry.counter("avatar.objects.delete.failures");
+    }
+
+    @Scheduled(cron = "${app.avatar-cleanup.cron:0 45 3 * * *}")
+    public void deleteOrphanedAvatars() {
+        if (!enabled) {
+            return;
+        }
+
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(grace));
+        int removed = 0;
+
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            Integer count = transactionTemplate.execute(status -> deleteChunk(cutoff));
+            if (count == null || count == 0) {
+                break;
+            }
+            removed += count;
+        }
+
+        if (removed > 0) {
+            log.info("🧹 Deleted {} orphaned avatar object(s)", removed);
+        }
+    }
+
+    private int deleteChunk(Timestamp cutoff) {
+        List<String> keys = jdbcTemplate.queryForList(SELECT_ORPHANS, String.class, cutoff, chunkSize);
+        int removed = 0;
+        for (String key : keys) {
+            try {
+                storageService.deleteAsync(key).join();
+            } catch (Exception e) {
+                // Row stays at zero, the next run tries again
+                failures.increment();
+                log.warn("❌ Could not delete orphaned avatar {}: {}", key, e.getMessage());
+                continue;
+            }
+            jdbcTemplate.update("DELETE FROM avatar_objects WHERE object_key = ?", key);
+            avatarCache.evict(key);
+            deleted.increment();
+            removed++;
+        }
+        return removed;
+    }
+}
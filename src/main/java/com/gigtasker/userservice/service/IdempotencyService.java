@@ -0,0 +1,114 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.exceptions.IdempotencyConflictException;
+import com.gigtasker.userservice.exceptions.IdempotencyKeyReuseException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Replays the stored response for a repeated {@code Idempotency-Key}.
+ * <p>
+ * The first request claims the key with a short-lived PENDING marker (SET NX), runs, and stores its response
+ * for {@code app.idempotency.ttl}. A retry with the same key gets that response back from Redis; a retry that
+ * arrives while the first one is still running gets a 409. If Redis is down we just run the request.
+ * <p>
+ * Each entry is stored as {@code <request hash>:<PENDING or response>}, so a key reused with a different request
+ * body is rejected (422) instead of being answered with another request's response.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final String PENDING = "PENDING";
+
+    private final StringRedisTemplate redisTemplate;
+    private final JsonMapper jsonMapper;
+    private final Duration ttl;
+    private final Duration pendingTtl;
+
+    public IdempotencyService(StringRedisTemplate redisTemplate, JsonMapper jsonMapper,
+                              @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${app.idempotency.pending-ttl:30s}") Duration pendingTtl) {
+        this.redisTemplate = redisTemplate;
+        this.jsonMapper = jsonMapper;
+        this.ttl = ttl;
+        this.pendingTtl = pendingTtl;
+    }
+
+    public <T> T execute(String scope, String idempotencyKey, Object request, Class<T> responseType,
+                         Supplier<T> action) {
+        if (StringUtils.isBlank(idempotencyKey)) {
+            return action.get();
+        }
+
+        String key = "idempotency:" + scope + ":" + idempotencyKey;
+        String requestHash = sha256(jsonMapper.writeValueAsBytes(request));
+
+        Boolean claimed;
+        try {
+            String stored = redisTemplate.opsForValue().get(key);
+            if (stored != null) {
+                if (!stored.startsWith(requestHash + ":")) {
+                    throw new IdempotencyKeyReuseException("Idempotency-Key was already used with a different request");
+                }
+                String payload = stored.substring(requestHash.length() + 1);
+                if (!PENDING.equals(payload)) {
+                    log.debug("Replaying stored response for idempotency key {}", idempotencyKey);
+                    return jsonMapper.readValue(payload, responseType);
+                }
+            }
+            claimed = redisTemplate.opsForValue().setIfAbsent(key, requestHash + ":" + PENDING, pendingTtl);
+        } catch (IdempotencyKeyReuseException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Idempotency store unavailable, running request without it: {}", e.getMessage());
+            return action.get();
+        }
+
+        if (!Boolean.TRUE.equals(claimed)) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is already in progress");
+        }
+
+        T response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            // Let the client retry with the same key
+            release(key);
+            throw e;
+        }
+
+        try {
+            redisTemplate.opsForValue().set(key, requestHash + ":" + jsonMapper.writeValueAsString(response), ttl);
+        } catch (Exception e) {
+            log.warn("Failed to store idempotent response for key {}: {}", idempotencyKey, e.getMessage());
+        }
+        return response;
+    }
+
+    private static String sha256(byte[] value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void release(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("Failed to release idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+}
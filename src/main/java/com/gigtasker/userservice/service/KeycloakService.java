@@ -9,16 +9,19 @@ import org.keycloak.admin.client.CreatedResponseUtil;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.admin.client.resource.RolesResource;
-import org.keycloak.admin.client.resource.UserResource;
 import org.keycloak.admin.client.resource.UsersResource;
 import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.representations.idm.GroupRepresentation;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,6 +29,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class KeycloakService {
     private final Keycloak keycloakBot;
+    private final AsyncTaskExecutor keycloakTaskExecutor;
+    private final KeycloakWriteCoalescer writeCoalescer;
+    private final Map<String, String> groupIdCache = new ConcurrentHashMap<>();
 
     @Value("${keycloak.bot.realm}")
     private String realm;
@@ -80,27 +86,70 @@ public class KeycloakService {
     //      ASSIGN USER GROUP
     // ---------------------------
     public void addUserToGroup(UUID keycloakId, String groupName) {
-        try {
-
-            List<GroupRepresentation> groups = realm()
-                    .groups()
-                    .groups(groupName, 0, 1);
+        String groupId = requireGroupId(groupName, "Group assignment failed");
 
-            if (groups.isEmpty()) {
-                log.warn("Group {} not found in Keycloak", groupName);
-                return;
-            }
-
-            String groupId = groups.getFirst().getId();
+        try {
             users().get(keycloakId.toString()).joinGroup(groupId);
             log.info("User {} added to group {}", keycloakId, groupName);
-
         } catch (Exception e) {
             log.error("Failed to assign group {}", groupName, e);
             throw new KeycloakException("Group assignment failed");
         }
     }
 
+    // Undoes addUserToGroup, e.g. when the DB half of a promotion fails
+    public void removeUserFromGroup(UUID keycloakId, String groupName) {
+        String groupId = requireGroupId(groupName, "Group removal failed");
+
+        try {
+            users().get(keycloakId.toString()).leaveGroup(groupId);
+            log.info("User {} removed from group {}", keycloakId, groupName);
+        } catch (Exception e) {
+            log.error("Failed to remove group {}", groupName, e);
+            throw new KeycloakException("Group removal failed");
+        }
+    }
+
+    private String requireGroupId(String groupName, String failureMessage) {
+        String groupId;
+        try {
+            groupId = resolveGroupId(groupName);
+        } catch (Exception e) {
+            log.error("Failed to look up group {}", groupName, e);
+            throw new KeycloakException(failureMessage);
+        }
+
+        if (groupId == null) {
+            log.error("Group {} not found in Keycloak", groupName);
+            throw new KeycloakException("Group " + groupName + " not found");
+        }
+        return groupId;
+    }
+
+    // Group ids never change once created, so look each one up only once
+    private String resolveGroupId(String groupName) {
+        String cached = groupIdCache.get(groupName);
+        if (cached != null) return cached;
+
+        List<GroupRepresentation> groups = realm()
+                .groups()
+                .groups(groupName, 0, 1);
+
+        if (groups.isEmpty()) return null;
+
+        String groupId = groups.getFirst().getId();
+        groupIdCache.put(groupName, groupId);
+        return groupId;
+    }
+
+    // ---------------------------
+    //   ENABLE / DISABLE USER
+    // ---------------------------
+    // Goes through the coalescer, so it shares one GET+PUT with other changes queued for the same user
+    public void setUserEnabled(UUID keycloakId, boolean enabled) {
+        writeCoalescer.setEnabled(keycloakId, enabled).join();
+    }
+
     // ---------------------------
     //  FIND USER BY EMAIL
     // ---------------------------
@@ -204,23 +253,77 @@ public class KeycloakService {
     // --- Sync Postgres User ID to Keycloak ---
     public void updateUserAttribute(UUID keycloakId, String attributeName, String value) {
         try {
-            UserResource userResource = users().get(keycloakId.toString());
-            UserRepresentation userRep = userResource.toRepresentation();
+            updateUserAttributeAsync(keycloakId, attributeName, value).join();
+        } catch (Exception e) {
+            log.error("Failed to update user attribute", e);
+            throw new KeycloakException("Attribute sync failed");
+        }
+    }
 
-            // Initialize attributes map if null
-            if (userRep.getAttributes() == null) {
-                userRep.setAttributes(new HashMap<>());
+    // Fire-and-forget variant: merged with other pending writes for the user, completes once Keycloak has it
+    public CompletableFuture<Void> updateUserAttributeAsync(UUID keycloakId, String attributeName, String value) {
+        return writeCoalescer.setAttribute(keycloakId, attributeName, value)
+                .thenRun(() -> log.info("Synced attribute '{}'='{}' for user {}", attributeName, value, keycloakId));
+    }
+
+    // ---------------------------
+    //  REMOVE USER FROM KEYCLOAK
+    // ---------------------------
+    public void removeUser(UUID keycloakId) {
+        try (Response response = users().delete(keycloakId.toString())) {
+            int status = response.getStatus();
+            if (status == 404) {
+                log.warn("User {} already gone from Keycloak", keycloakId);
+            } else if (status >= 300) {
+                throw new KeycloakException("Keycloak error: " + response.getStatusInfo());
             }
+        }
+    }
 
-            // Set the single attribute (e.g. internal_id = 501)
-            userRep.singleAttribute(attributeName, value);
+    // ---------------------------
+    //   PAGE THROUGH ALL USERS
+    // ---------------------------
+    public List<UserRepresentation> listUsers(int first, int max) {
+        return users().list(first, max);
+    }
 
-            userResource.update(userRep);
-            log.info("Synced attribute '{}'='{}' for user {}", attributeName, value, keycloakId);
-        } catch (Exception e) {
-            log.error("Failed to update user attribute", e);
-            throw new KeycloakException("Attribute sync failed");
+    // Ids of every member of a group, paged (empty if the group doesn't exist)
+    public Set<UUID> getGroupMemberIds(String groupName, int pageSize) {
+        String groupId = resolveGroupId(groupName);
+        if (groupId == null) return Set.of();
+
+        Set<UUID> members = new HashSet<>();
+        for (int first = 0; ; first += pageSize) {
+            List<UserRepresentation> page = realm().groups().group(groupId).members(first, pageSize, true);
+            page.forEach(u -> members.add(UUID.fromString(u.getId())));
+            if (page.size() < pageSize) return members;
         }
     }
 
+    // ---------------------------
+    //  FAN OUT OVER MANY USERS
+    // ---------------------------
+    /**
+     * Runs {@code operation} for every id on the bounded {@code keycloakTaskExecutor} and waits for all of them.
+     * One user failing does not stop the others.
+     *
+     * @return failure message per Keycloak id, empty when everything succeeded
+     */
+    public Map<UUID, String> applyToUsers(Collection<UUID> keycloakIds, Consumer<UUID> operation) {
+        Map<UUID, String> failures = new ConcurrentHashMap<>();
+
+        CompletableFuture<?>[] futures = keycloakIds.stream()
+                .map(id -> CompletableFuture.runAsync(() -> {
+                    try {
+                        operation.accept(id);
+                    } catch (Exception e) {
+                        log.error("Keycloak operation failed for user {}", id, e);
+                        failures.put(id, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                    }
+                }, keycloakTaskExecutor))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(futures).join();
+        return failures;
+    }
 }
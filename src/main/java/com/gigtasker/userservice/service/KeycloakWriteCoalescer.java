@@ -0,0 +1,191 @@
+package com.gigtasker.userservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Merges field-level writes to a Keycloak user (attributes, enabled flag) that arrive within a short window
+ * into one {@code GET + PUT} of the user representation.
+ * <p>
+ * The first change for a user schedules a flush {@code app.keycloak.coalesce.window} later; anything queued for
+ * the same user before then rides along. Later values win per field. Every caller gets a future that completes
+ * when the merged write lands, so fire-and-forget callers (registration) don't wait at all. Enabled-flag
+ * changes are always joined (status changes, compensation), so they flush at once, taking along whatever was
+ * already queued for the user, instead of waiting out the window.
+ * <p>
+ * One platform thread only keeps the timers; the GET+PUT itself runs on this class's own workers (virtual
+ * threads when {@code spring.threads.virtual.enabled}), at most {@code app.keycloak.coalesce.threads} at a time.
+ * Never on {@code keycloakTaskExecutor}: callers on that executor join these futures, and sharing it could starve
+ * the flush.
+ */
+@Slf4j
+@Service
+public class KeycloakWriteCoalescer {
+
+    // Pending changes for one user; guarded by the ConcurrentHashMap bin lock (only touched inside compute/remove)
+    private static final class PendingWrite {
+        final long queuedAtNanos = System.nanoTime();
+        final Map<String, String> attributes = new HashMap<>();
+        Boolean enabled;
+        int mutations;
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    }
+
+    private final Keycloak keycloakBot;
+    private final ConcurrentHashMap<UUID, PendingWrite> pending = new ConcurrentHashMap<>();
+    // Users with a GET+PUT in progress; a second one for the same user would read a stale representation
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService writers;
+    private final Semaphore writePermits;
+
+    private final Timer latency;
+    private final DistributionSummary batchSize;
+    private final Counter failures;
+
+    @Value("${keycloak.bot.realm}")
+    private String realm;
+
+    @Value("${app.keycloak.coalesce.window:50ms}")
+    private Duration window;
+
+    public KeycloakWriteCoalescer(@Qualifier("keycloakBot") Keycloak keycloakBot, MeterRegistry meterRegistry,
+                                  @Value("${app.keycloak.coalesce.threads:4}") int threads,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.keycloakBot = keycloakBot;
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("keycloak-writer-timer").daemon().factory());
+        // Same switch as keycloakTaskExecutor: a virtual thread per flush, throttled by permits instead of a pool
+        this.writers = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("keycloak-writer-", 0).factory())
+                : Executors.newFixedThreadPool(threads,
+                        Thread.ofPlatform().name("keycloak-writer-", 0).daemon().factory());
+        this.writePermits = new Semaphore(threads);
+        this.latency = Timer.builder("keycloak.writes.latency")
+                .description("Time from the first queued change to the merged PUT completing")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("keycloak.writes.batch.size")
+                .description("Field changes merged into one PUT")
+                .register(meterRegistry);
+        this.failures = meterRegistry.counter("keycloak.writes.failures");
+        meterRegistry.gauge("keycloak.writes.pending", pending, Map::size);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // Flush whatever is still queued rather than dropping it
+        pending.keySet().forEach(this::flush);
+        // Timers still due hand their flush to the writers, so those stop last
+        timer.shutdown();
+        timer.awaitTermination(1, TimeUnit.SECONDS);
+        writers.shutdown();
+        writers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    public CompletableFuture<Void> setAttribute(UUID keycloakId, String name, String value) {
+        return enqueue(keycloakId, write -> write.attributes.put(name, value), false);
+    }
+
+    // Flushed immediately: every caller joins it, often inside a transaction that holds row locks meanwhile
+    public CompletableFuture<Void> setEnabled(UUID keycloakId, boolean enabled) {
+        return enqueue(keycloakId, write -> write.enabled = enabled, true);
+    }
+
+    private CompletableFuture<Void> enqueue(UUID keycloakId, Consumer<PendingWrite> change, boolean immediate) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        boolean[] first = {false};
+
+        pending.compute(keycloakId, (id, write) -> {
+            if (write == null) {
+                write = new PendingWrite();
+                first[0] = true;
+            }
+            change.accept(write);
+            write.mutations++;
+            write.waiters.add(future);
+            return write;
+        });
+
+        if (immediate) {
+            // The window's timer may still fire later; it finds nothing pending (or a newer batch) and that's fine
+            writers.execute(() -> flush(keycloakId));
+        } else if (first[0]) {
+            scheduleFlush(keycloakId);
+        }
+        return future;
+    }
+
+    // The timer thread only hands the flush over, so a slow Keycloak never delays other users' timers
+    private void scheduleFlush(UUID keycloakId) {
+        timer.schedule(() -> writers.execute(() -> flush(keycloakId)), window.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void flush(UUID keycloakId) {
+        if (!inFlight.add(keycloakId)) {
+            // Previous write for this user still running: try again after another window
+            scheduleFlush(keycloakId);
+            return;
+        }
+        // Removing first: changes queued from now on start a new window instead of being lost
+        PendingWrite write = pending.remove(keycloakId);
+        if (write == null) {
+            inFlight.remove(keycloakId);
+            return;
+        }
+
+        try {
+            writePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            inFlight.remove(keycloakId);
+            write.waiters.forEach(f -> f.completeExceptionally(e));
+            return;
+        }
+        try {
+            UserResource userResource = keycloakBot.realm(realm).users().get(keycloakId.toString());
+            UserRepresentation representation = userResource.toRepresentation();
+
+            if (write.enabled != null) {
+                representation.setEnabled(write.enabled);
+            }
+            if (!write.attributes.isEmpty()) {
+                if (representation.getAttributes() == null) {
+                    representation.setAttributes(new HashMap<>());
+                }
+                write.attributes.forEach(representation::singleAttribute);
+            }
+            userResource.update(representation);
+
+            batchSize.record(write.mutations);
+            latency.record(System.nanoTime() - write.queuedAtNanos, TimeUnit.NANOSECONDS);
+            write.waiters.forEach(f -> f.complete(null));
+        } catch (Exception e) {
+            failures.increment();
+            log.error("❌ Keycloak write for user {} failed ({} change(s))", keycloakId, write.mutations, e);
+            write.waiters.forEach(f -> f.completeExceptionally(e));
+        } finally {
+            writePermits.release();
+            inFlight.remove(keycloakId);
+        }
+    }
+}
@@ -2,12 +2,8 @@ package com.gigtasker.userservice.service;
 
 import com.gigtasker.userservice.dto.CountryDTO;
 import com.gigtasker.userservice.dto.GenderDTO;
-import com.gigtasker.userservice.mapper.CountryMapper;
-import com.gigtasker.userservice.mapper.GenderMapper;
-import com.gigtasker.userservice.repository.CountryRepository;
-import com.gigtasker.userservice.repository.GenderRepository;
+import com.gigtasker.userservice.dto.RegionDTO;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -16,21 +12,31 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ReferenceDataService  {
 
-    private final CountryRepository countryRepository;
-    private final GenderRepository genderRepository;
-    private final CountryMapper countryMapper;
-    private final GenderMapper genderMapper;
+    private static final int MAX_SEARCH_RESULTS = 50;
+
+    private final ReferenceIndex referenceIndex;
 
     public List<CountryDTO> getAllCountries() {
-        return countryRepository.findAllByOrderByNameAsc().stream()
-                .map(countryMapper::toDTO)
-                .toList();
+        return referenceIndex.getAllCountries();
+    }
+
+    public CountryDTO getCountryByIsoCode(String isoCode) {
+        return referenceIndex.findCountryByIsoCode(isoCode);
+    }
+
+    public List<CountryDTO> getCountriesByRegion(String region) {
+        return referenceIndex.getCountriesByRegion(region);
+    }
+
+    public List<CountryDTO> searchCountries(String prefix, int limit) {
+        return referenceIndex.searchCountriesByPrefix(prefix, Math.clamp(limit, 1, MAX_SEARCH_RESULTS));
+    }
+
+    public List<RegionDTO> getRegions() {
+        return referenceIndex.getRegions();
     }
 
-    @Cacheable("genders")
     public List<GenderDTO> getAllGenders() {
-        return genderRepository.findAll().stream()
-                .map(genderMapper::toDTO)
-                .toList();
+        return referenceIndex.getAllGenders();
     }
 }
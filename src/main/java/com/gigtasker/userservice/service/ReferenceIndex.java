@@ -0,0 +1,194 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.dto.CountryDTO;
+import com.gigtasker.userservice.dto.GenderDTO;
+import com.gigtasker.userservice.dto.RegionDTO;
+import com.gigtasker.userservice.dto.SubRegionDTO;
+import com.gigtasker.userservice.entity.Country;
+import com.gigtasker.userservice.entity.Gender;
+import com.gigtasker.userservice.entity.Region;
+import com.gigtasker.userservice.mapper.CountryMapper;
+import com.gigtasker.userservice.mapper.GenderMapper;
+import com.gigtasker.userservice.repository.CountryRepository;
+import com.gigtasker.userservice.repository.GenderRepository;
+import com.gigtasker.userservice.repository.RegionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable in-memory snapshot of the reference tables (countries, regions, subregions, genders).
+ * <p>
+ * Reference data only changes when the seeder runs, so we read the tables once and answer every lookup from
+ * memory: ISO code and region lookups are hash hits, name type-ahead is a binary search over a sorted array.
+ * The snapshot is rebuilt on {@link ApplicationReadyEvent} (after the seeder) and swapped in atomically.
+ */
+@Slf4j
+@Service
+public class ReferenceIndex {
+
+    private record Snapshot(
+            Map<String, CountryDTO> byIsoCode,
+            Map<Long, CountryDTO> byId,
+            Map<Long, GenderDTO> gendersById,
+            List<GenderDTO> genders,
+            Map<String, List<CountryDTO>> byRegion,
+            List<CountryDTO> sortedByName,
+            String[] sortedNameKeys,
+            List<RegionDTO> regions
+    ) {}
+
+    private final CountryRepository countryRepository;
+    private final RegionRepository regionRepository;
+    private final GenderRepository genderRepository;
+    private final CountryMapper countryMapper;
+    private final GenderMapper genderMapper;
+    private final TransactionTemplate readOnlyTx;
+
+    private volatile Snapshot snapshot;
+
+    public ReferenceIndex(CountryRepository countryRepository, RegionRepository regionRepository,
+                          GenderRepository genderRepository, CountryMapper countryMapper, GenderMapper genderMapper,
+                          PlatformTransactionManager transactionManager) {
+        this.countryRepository = countryRepository;
+        this.regionRepository = regionRepository;
+        this.genderRepository = genderRepository;
+        this.countryMapper = countryMapper;
+        this.genderMapper = genderMapper;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Snapshot next = readOnlyTx.execute(status -> build());
+        snapshot = next;
+        log.info("Reference index loaded: {} countries, {} regions",
+                next.byIsoCode().size(), next.regions().size());
+    }
+
+    public CountryDTO findCountryByIsoCode(String isoCode) {
+        if (isoCode == null) return null;
+        return snapshot().byIsoCode().get(isoCode.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public CountryDTO findCountryById(Long id) {
+        if (id == null) return null;
+        return snapshot().byId().get(id);
+    }
+
+    public List<CountryDTO> getAllCountries() {
+        return snapshot().sortedByName();
+    }
+
+    public List<CountryDTO> getCountriesByRegion(String regionName) {
+        if (regionName == null) return List.of();
+        return snapshot().byRegion().getOrDefault(key(regionName), List.of());
+    }
+
+    // Type-ahead: countries whose name starts with the prefix, in name order
+    public List<CountryDTO> searchCountriesByPrefix(String prefix, int limit) {
+        Snapshot current = snapshot();
+        String needle = key(prefix == null ? "" : prefix);
+        String[] keys = current.sortedNameKeys();
+
+        int from = Arrays.binarySearch(keys, needle);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        // Country names are unique, so an exact hit is also the first name carrying the prefix
+        int to = from;
+        while (to < keys.length && to - from < limit && keys[to].startsWith(needle)) {
+            to++;
+        }
+        return current.sortedByName().subList(from, to);
+    }
+
+    public List<RegionDTO> getRegions() {
+        return snapshot().regions();
+    }
+
+    public List<GenderDTO> getAllGenders() {
+        return snapshot().genders();
+    }
+
+    public GenderDTO findGenderById(Long id) {
+        if (id == null) return null;
+        return snapshot().gendersById().get(id);
+    }
+
+    // Requests can arrive before ApplicationReadyEvent; build once on demand, load() replaces it after seeding
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = readOnlyTx.execute(status -> build());
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot build() {
+        List<Country> countryRows = countryRepository.findAllWithRegion().stream()
+                .sorted(Comparator.comparing((Country c) -> key(c.getName())))
+                .toList();
+        List<CountryDTO> countries = countryRows.stream().map(countryMapper::toDTO).toList();
+
+        Map<String, CountryDTO> byIsoCode = new HashMap<>();
+        Map<Long, CountryDTO> byId = new HashMap<>();
+        Map<String, List<CountryDTO>> byRegion = new HashMap<>();
+        String[] nameKeys = new String[countries.size()];
+
+        for (int i = 0; i < countries.size(); i++) {
+            CountryDTO country = countries.get(i);
+            byIsoCode.put(country.isoCode().toUpperCase(Locale.ROOT), country);
+            byId.put(country.id(), country);
+            byRegion.computeIfAbsent(key(country.regionName()), k -> new ArrayList<>()).add(country);
+            nameKeys[i] = key(country.name());
+        }
+
+        List<RegionDTO> regions = regionRepository.findAllWithSubRegions().stream()
+                .sorted(Comparator.comparing(Region::getName))
+                .map(ReferenceIndex::toRegionDTO)
+                .toList();
+
+        List<GenderDTO> genders = genderRepository.findAll().stream()
+                .sorted(Comparator.comparing(Gender::getId))
+                .map(genderMapper::toDTO)
+                .toList();
+
+        return new Snapshot(
+                Map.copyOf(byIsoCode),
+                Map.copyOf(byId),
+                genders.stream().collect(Collectors.toUnmodifiableMap(GenderDTO::id, g -> g)),
+                genders,
+                byRegion.entrySet().stream()
+                        .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> List.copyOf(e.getValue()))),
+                countries,
+                nameKeys,
+                regions
+        );
+    }
+
+    private static RegionDTO toRegionDTO(Region region) {
+        List<SubRegionDTO> subRegions = region.getSubRegions().stream()
+                .map(s -> new SubRegionDTO(s.getId(), s.getName()))
+                .sorted(Comparator.comparing(SubRegionDTO::name))
+                .toList();
+        return new RegionDTO(region.getId(), region.getName(), region.getMacroRegion(), subRegions);
+    }
+
+    private static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
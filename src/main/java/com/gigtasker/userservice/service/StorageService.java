@@ -1,23 +1,69 @@
 package com.gigtasker.userservice.service;
 
-import lombok.RequiredArgsConstructor;
+import com.gigtasker.userservice.exceptions.AWSStorageException;
+import com.gigtasker.userservice.exceptions.StorageBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.io.IOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+/**
+ * Avatar storage in S3 (MinIO locally).
+ * <p>
+ * Uploads go through {@link S3AsyncClient} and hand back a future, so the request thread is free while the bytes
+ * are in flight. A semaphore caps concurrent uploads at {@code app.storage.upload.max-concurrency}; a caller that
+ * finds no free slot gets a {@link StorageBusyException} right away (retry after
+ * {@code app.storage.upload.retry-after}) instead of parking a request thread, which keeps a burst (or a bulk
+ * avatar job) from queueing unbounded work behind the HTTP pool.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class StorageService {
 
-    private final S3Client s3Client;
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    // Same bytes must give the same key, whatever the client called the file
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/gif", "gif",
+            "image/webp", "webp");
+
+    private final S3AsyncClient s3AsyncClient;
+    private final Semaphore uploadPermits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Timer uploadTimer;
+    private final Counter uploadedBytes;
+    private final Counter uploadFailures;
+    private final Counter deduplicated;
+    private final Counter writeBackFailures;
 
     @Value("${cloud.aws.s3.bucket}")
     private String bucketName;
@@ -25,29 +71,180 @@ public class StorageService {
     @Value("${cloud.aws.s3.endpoint}") // e.g. http://localhost:9000
     private String endpoint;
 
-    public String uploadProfileImage(UUID userId, MultipartFile file) {
-        String extension = getExtension(file.getOriginalFilename());
-        String key = "avatars/" + userId.toString() + "." + extension;
+    @Value("${app.storage.upload.retry-after:1s}")
+    private Duration retryAfter;
+
+    public StorageService(S3AsyncClient s3AsyncClient, MeterRegistry meterRegistry,
+                          @Value("${app.storage.upload.max-concurrency:32}") int maxConcurrency) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.uploadPermits = new Semaphore(maxConcurrency);
+        this.uploadTimer = meterRegistry.timer("storage.upload");
+        // rate(storage_upload_bytes_total) gives bytes/sec
+        this.uploadedBytes = Counter.builder("storage.upload.bytes").baseUnit("bytes").register(meterRegistry);
+        this.uploadFailures = meterRegistry.counter("storage.upload.failures");
+        this.deduplicated = meterRegistry.counter("storage.upload.deduplicated");
+        this.writeBackFailures = meterRegistry.counter("storage.upload.writeback.failures");
+        meterRegistry.gauge("storage.upload.in.flight", inFlight);
+    }
+
+    /**
+     * Stores an avatar under its content hash, {@code avatars/{sha256}.{ext}} ({@code ext} from the allow-listed
+     * content type, never from the client's filename), and runs {@code onStored} with
+     * the key once the object is in place. The hash is computed while the upload is read into memory (avatars
+     * are small, and the multipart temp file may be gone by the time the upload runs). If an object with that
+     * key already exists the PUT is skipped.
+     * <p>
+     * {@code onStored} is where the caller commits the reference (see {@code avatar_objects}). The object is
+     * checked once more after that, whether the PUT was skipped or not: the orphan cleanup may have deleted an
+     * unreferenced object with this key between our HEAD (or PUT) and that commit, in which case it is written
+     * back. The cleanup holds the row lock until its S3 delete is done, so the commit can't overtake it. The
+     * upload keeps its permit until then, so that write-back can't be turned away as "busy"; since the reference
+     * is already committed, a failed write-back is retried once, then logged and counted, not returned.
+     */
+    public <T> CompletableFuture<T> uploadProfileImageAsync(UUID userId, MultipartFile file,
+                                                            Function<String, T> onStored) {
+        byte[] content;
+        String sha256;
+        try (DigestInputStream in = new DigestInputStream(file.getInputStream(), MessageDigest.getInstance("SHA-256"))) {
+            content = in.readAllBytes();
+            sha256 = HexFormat.of().formatHex(in.getMessageDigest().digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.error("Failed to read upload for user {}", userId, e);
+            return CompletableFuture.failedFuture(new RuntimeException("File upload failed"));
+        }
+        String contentType = normalizedContentType(file.getContentType());
+        String extension = EXTENSIONS.get(contentType);
+        if (extension == null) {
+            // Not an image type we know: no extension, and never echo the client's type back
+            contentType = "application/octet-stream";
+        }
+        String key = "avatars/" + sha256 + (extension != null ? "." + extension : "");
+        String storedType = contentType;
+
+        acquirePermit();
+        CompletableFuture<Void> stored;
+        try {
+            stored = existsAsync(key).thenCompose(exists -> {
+                if (exists) {
+                    deduplicated.increment();
+                    return CompletableFuture.completedFuture(null);
+                }
+                return put(key, content, storedType).thenApply(k -> null);
+            });
+        } catch (RuntimeException e) {
+            stored = CompletableFuture.failedFuture(e);
+        }
+
+        return stored
+                .thenCompose(ignored -> {
+                    T result = onStored.apply(key);
+                    return writeBackIfMissing(key, content, storedType).thenApply(v -> result);
+                })
+                .whenComplete((result, error) -> uploadPermits.release());
+    }
+
+    // Runs under the upload's permit, after the reference is committed
+    private CompletableFuture<Void> writeBackIfMissing(String key, byte[] content, String contentType) {
+        return existsAsync(key)
+                .thenCompose(exists -> exists
+                        ? CompletableFuture.<String>completedFuture(key)
+                        : put(key, content, contentType).exceptionallyCompose(e -> put(key, content, contentType)))
+                .handle((k, error) -> {
+                    if (error != null) {
+                        writeBackFailures.increment();
+                        log.error("❌ Avatar {} is referenced but could not be written back", key, unwrap(error));
+                    }
+                    return null;
+                });
+    }
 
+    // Shared by single and bulk avatar uploads
+    public CompletableFuture<String> putAsync(String key, byte[] content, String contentType) {
+        acquirePermit();
+        CompletableFuture<String> upload;
         try {
-            PutObjectRequest putOb = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .contentType(file.getContentType())
-                    .build();
-
-            s3Client.putObject(putOb, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
-            return key;
-
-        } catch (IOException e) {
-            log.error("Failed to upload file", e);
-            throw new RuntimeException("File upload failed");
+            upload = put(key, content, contentType);
+        } catch (RuntimeException e) {
+            upload = CompletableFuture.failedFuture(e);
+        }
+        return upload.whenComplete((k, error) -> uploadPermits.release());
+    }
+
+    public CompletableFuture<Boolean> existsAsync(String key) {
+        return s3AsyncClient.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return true;
+                    }
+                    Throwable cause = unwrap(error);
+                    if (cause instanceof NoSuchKeyException
+                            || (cause instanceof S3Exception s3 && s3.statusCode() == 404)) {
+                        return false;
+                    }
+                    throw cause instanceof S3Exception s3
+                            ? new AWSStorageException("Avatar lookup failed", s3)
+                            : new RuntimeException("Avatar lookup failed", cause);
+                });
+    }
+
+    public CompletableFuture<Void> deleteAsync(String key) {
+        return s3AsyncClient.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(key).build())
+                .thenApply(response -> null);
+    }
+
+    // Callers hold an upload permit
+    private CompletableFuture<String> put(String key, byte[] content, String contentType) {
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength((long) content.length)
+                // The key is the content hash: the object can never change
+                .cacheControl(IMMUTABLE)
+                .build();
+
+        CompletableFuture<String> upload;
+        try {
+            upload = s3AsyncClient.putObject(request, AsyncRequestBody.fromBytes(content)).thenApply(r -> key);
+        } catch (RuntimeException e) {
+            upload = CompletableFuture.failedFuture(e);
+        }
+
+        return upload.handle((result, error) -> {
+            inFlight.decrementAndGet();
+            uploadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (error == null) {
+                uploadedBytes.increment(content.length);
+                return result;
+            }
+            uploadFailures.increment();
+            Throwable cause = unwrap(error);
+            log.error("❌ Upload of {} failed", key, cause);
+            if (cause instanceof S3Exception s3) {
+                throw new AWSStorageException("File upload failed", s3);
+            }
+            throw new RuntimeException("File upload failed", cause);
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    // Never waits: blocking here would tie up the request thread the async upload is meant to free
+    private void acquirePermit() {
+        if (!uploadPermits.tryAcquire()) {
+            throw new StorageBusyException("Too many uploads in progress, retry later",
+                    Math.max(1, retryAfter.toSeconds()));
         }
     }
 
-    private String getExtension(String filename) {
-        return filename != null && filename.contains(".")
-                ? filename.substring(filename.lastIndexOf(".") + 1)
-                : "jpg";
+    private static String normalizedContentType(String contentType) {
+        if (contentType == null) return null;
+        int params = contentType.indexOf(';');
+        return (params >= 0 ? contentType.substring(0, params) : contentType).trim().toLowerCase(Locale.ROOT);
     }
 }
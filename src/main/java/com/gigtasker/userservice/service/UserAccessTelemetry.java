@@ -0,0 +1,135 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.util.CountMinSketch;
+import com.gigtasker.userservice.util.HyperLogLog;
+import com.gigtasker.userservice.util.TopK;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Which users are read, how often, and in what batch sizes, to size caches from real traffic.
+ * <p>
+ * Each access updates a Count-Min sketch (per-user frequency), a top-K table of the hottest ids, a HyperLogLog
+ * (distinct users = working set) and a per-operation counter; batch reads also record their size. None of
+ * that allocates on the request path. Structures cover a tumbling window of {@code app.access-telemetry.window};
+ * at the end of each window a summary is kept for {@code /actuator/useraccess} and the Prometheus gauges.
+ */
+@Service
+public class UserAccessTelemetry {
+
+    public enum Operation { GET_BY_ID, GET_ME, BATCH }
+
+    public record WindowSummary(Instant start, Instant end, long accesses, long distinctUsers,
+                                double topKShare, List<TopK.Entry> hottest) {}
+
+    private final CountMinSketch sketch;
+    private final TopK topK;
+    private final HyperLogLog distinct;
+    private final AtomicLong accesses = new AtomicLong();
+    private final Map<Operation, Counter> operations = new EnumMap<>(Operation.class);
+    private final DistributionSummary batchSizes;
+
+    @Value("${app.access-telemetry.enabled:true}")
+    private boolean enabled;
+
+    private volatile Instant windowStart = Instant.now();
+    private volatile WindowSummary lastWindow;
+
+    public UserAccessTelemetry(MeterRegistry meterRegistry,
+                               @Value("${app.access-telemetry.sketch-width:4096}") int sketchWidth,
+                               @Value("${app.access-telemetry.sketch-depth:4}") int sketchDepth,
+                               @Value("${app.access-telemetry.top-k:50}") int topK,
+                               @Value("${app.access-telemetry.hll-precision:14}") int hllPrecision) {
+        this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        this.topK = new TopK(topK);
+        this.distinct = new HyperLogLog(hllPrecision);
+
+        for (Operation op : Operation.values()) {
+            operations.put(op, meterRegistry.counter("user.access", "operation", op.name().toLowerCase(Locale.ROOT)));
+        }
+        this.batchSizes = DistributionSummary.builder("user.access.batch.size")
+                .description("Ids per batch user read")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        // Values of the last completed window, so scrapes see stable numbers
+        Gauge.builder("user.access.window.distinct", this, t -> t.lastWindow == null ? 0 : t.lastWindow.distinctUsers())
+                .description("Distinct users read in the last window (working set)")
+                .register(meterRegistry);
+        Gauge.builder("user.access.window.top.share", this, t -> t.lastWindow == null ? 0 : t.lastWindow.topKShare())
+                .description("Share of reads that went to the top-K users in the last window")
+                .register(meterRegistry);
+    }
+
+    public void record(Operation operation, long userId) {
+        if (!enabled) return;
+        operations.get(operation).increment();
+        touch(userId);
+    }
+
+    public void recordBatch(Collection<Long> userIds) {
+        if (!enabled) return;
+        operations.get(Operation.BATCH).increment();
+        batchSizes.record(userIds.size());
+        for (Long id : userIds) {
+            if (id != null) touch(id);
+        }
+    }
+
+    private void touch(long userId) {
+        accesses.incrementAndGet();
+        distinct.add(userId);
+        topK.offer(userId, sketch.add(userId));
+    }
+
+    public WindowSummary currentWindow() {
+        return summarize(Instant.now());
+    }
+
+    public WindowSummary lastWindow() {
+        return lastWindow;
+    }
+
+    // Tumbling window: concurrent records during the reset land in either window, which is fine for estimates
+    @Scheduled(fixedDelayString = "${app.access-telemetry.window:5m}",
+            initialDelayString = "${app.access-telemetry.window:5m}")
+    public void rotate() {
+        Instant now = Instant.now();
+        lastWindow = summarize(now);
+        reset(now);
+    }
+
+    // Drops what the current window has seen so far without publishing it (e.g. reads made by the warm-up)
+    public void discardCurrentWindow() {
+        reset(Instant.now());
+    }
+
+    private void reset(Instant now) {
+        sketch.reset();
+        topK.reset();
+        distinct.reset();
+        accesses.set(0);
+        windowStart = now;
+    }
+
+    private WindowSummary summarize(Instant end) {
+        long total = accesses.get();
+        List<TopK.Entry> hottest = topK.snapshot();
+        long hotReads = hottest.stream().mapToLong(TopK.Entry::count).sum();
+        double share = total == 0 ? 0 : Math.min(1.0, (double) hotReads / total);
+        return new WindowSummary(windowStart, end, total, distinct.estimate(), share, hottest);
+    }
+}
@@ -0,0 +1,200 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.dto.BulkItemResult;
+import com.gigtasker.userservice.dto.UserChangedEvent;
+import com.gigtasker.userservice.entity.Role;
+import com.gigtasker.userservice.enums.RoleType;
+import com.gigtasker.userservice.enums.UserChangeType;
+import com.gigtasker.userservice.repository.UserRepository;
+import com.gigtasker.userservice.repository.UserRepository.UserKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Bulk moderation (promote / disable / purge many users at once).
+ * <p>
+ * Users are loaded with one query, Keycloak is called in parallel on the bounded admin executor using the
+ * stored {@code keycloakId}, and the DB side is a single set-based statement over the ids Keycloak accepted
+ * (purge reverses that order, see {@link #purgeUsers}).
+ * Every requested id gets a result, so callers can retry just the failures.
+ */
+@Slf4j
+@Service
+public class UserAdminService {
+
+    private final UserRepository userRepository;
+    private final KeycloakService keycloakService;
+    private final RoleService roleService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserAuditTrail auditTrail;
+    private final TransactionTemplate transactionTemplate;
+
+    public UserAdminService(UserRepository userRepository, KeycloakService keycloakService, RoleService roleService,
+                            ApplicationEventPublisher eventPublisher, UserAuditTrail auditTrail,
+                            PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.keycloakService = keycloakService;
+        this.roleService = roleService;
+        this.eventPublisher = eventPublisher;
+        this.auditTrail = auditTrail;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public List<BulkItemResult<Long>> promoteUsersToAdmin(List<Long> userIds) {
+        Role adminRole = roleService.findRoleByName(RoleType.ROLE_ADMIN)
+                .orElseThrow(() -> new RuntimeException("ROLE_ADMIN missing"));
+
+        return execute(userIds, userRepository.findLiveKeysByIdIn(dedupe(userIds)),
+                id -> keycloakService.addUserToGroup(id, "GIGTASKER_ADMIN_USERS"),
+                ok -> userRepository.addRoleToUsers(ok, adminRole.getId()),
+                id -> keycloakService.removeUserFromGroup(id, "GIGTASKER_ADMIN_USERS"),
+                UserChangeType.ROLES_CHANGED,
+                "promoted to ADMIN");
+    }
+
+    public List<BulkItemResult<Long>> disableUsers(List<Long> userIds) {
+        return execute(userIds, userRepository.findLiveKeysByIdIn(dedupe(userIds)),
+                id -> keycloakService.setUserEnabled(id, false),
+                userRepository::softDeleteByIdIn,
+                id -> keycloakService.setUserEnabled(id, true),
+                UserChangeType.DELETED,
+                "soft-deleted");
+    }
+
+    /**
+     * Unlike promote/disable, purge goes DB first: deleting a Keycloak account can't be undone, so it is only
+     * removed once its row is gone. A Keycloak removal that fails afterwards is reported per id (the account
+     * has no profile left, so {@code /me} answers 404 for it) and has to be cleaned up in Keycloak.
+     */
+    public List<BulkItemResult<Long>> purgeUsers(List<Long> userIds) {
+        // Purge also covers users that were already soft-deleted (the usual flow is disable first, purge later)
+        List<UserKeys> found = userRepository.findAllKeysByIdIn(dedupe(userIds));
+        Map<UUID, Long> idsByKeycloakId = new HashMap<>();
+        for (UserKeys keys : found) {
+            idsByKeycloakId.put(keys.getKeycloakId(), keys.getId());
+        }
+        List<Long> ids = List.copyOf(idsByKeycloakId.values());
+
+        // 1. One set-based delete; if it fails nothing has been touched anywhere
+        Map<Long, String> failures = new HashMap<>();
+        if (!ids.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    userRepository.removeAllRolesByIdIn(ids);
+                    userRepository.hardDeleteByIdIn(ids);
+                    idsByKeycloakId.forEach((kcId, id) -> {
+                        eventPublisher.publishEvent(UserChangedEvent.of(UserChangeType.PURGED, id, kcId));
+                        auditTrail.record(UserChangeType.PURGED, id, kcId, Map.of("bulk", "PERMANENTLY deleted"));
+                    });
+                });
+            } catch (Exception e) {
+                log.error("Bulk purge DB delete failed for {} user(s), Keycloak left untouched", ids.size(), e);
+                ids.forEach(id -> failures.put(id, "Database delete failed"));
+            }
+        }
+
+        // 2. Keycloak, in parallel, only for rows that are really gone
+        if (failures.isEmpty() && !ids.isEmpty()) {
+            keycloakService.applyToUsers(idsByKeycloakId.keySet(), keycloakService::removeUser)
+                    .forEach((kcId, message) -> {
+                        log.error("User {} purged from the DB but Keycloak account {} is still there: {}",
+                                idsByKeycloakId.get(kcId), kcId, message);
+                        failures.put(idsByKeycloakId.get(kcId),
+                                "Deleted from database, Keycloak account not removed: " + message);
+                    });
+        }
+
+        log.info("Bulk PERMANENTLY deleted: {} requested, {} found, {} ok, {} failed", userIds.size(),
+                ids.size(), ids.size() - failures.size(), failures.size());
+
+        return results(userIds, idsByKeycloakId, failures);
+    }
+
+    private List<BulkItemResult<Long>> execute(List<Long> requestedIds, List<UserKeys> found,
+                                               Consumer<UUID> keycloakOperation,
+                                               Consumer<List<Long>> dbOperation,
+                                               Consumer<UUID> keycloakCompensation,
+                                               UserChangeType changeType,
+                                               String action) {
+        Map<UUID, Long> idsByKeycloakId = new HashMap<>();
+        for (UserKeys keys : found) {
+            idsByKeycloakId.put(keys.getKeycloakId(), keys.getId());
+        }
+
+        // 1. Keycloak first, in parallel
+        Map<UUID, String> keycloakFailures = keycloakService.applyToUsers(idsByKeycloakId.keySet(), keycloakOperation);
+
+        Map<Long, String> failures = new HashMap<>();
+        keycloakFailures.forEach((kcId, message) -> failures.put(idsByKeycloakId.get(kcId), message));
+
+        List<Long> succeeded = idsByKeycloakId.values().stream()
+                .filter(id -> !failures.containsKey(id))
+                .toList();
+
+        // 2. One set-based statement for everything Keycloak accepted
+        if (!succeeded.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    dbOperation.accept(succeeded);
+                    idsByKeycloakId.forEach((kcId, id) -> {
+                        if (!failures.containsKey(id)) {
+                            eventPublisher.publishEvent(UserChangedEvent.of(changeType, id, kcId));
+                            auditTrail.record(changeType, id, kcId, Map.of("bulk", action));
+                        }
+                    });
+                });
+            } catch (Exception e) {
+                log.error("Bulk DB update failed after Keycloak changes for {} user(s)", succeeded.size(), e);
+                succeeded.forEach(id -> failures.put(id, "Database update failed"));
+                compensate(idsByKeycloakId, succeeded, keycloakCompensation);
+            }
+        }
+
+        log.info("Bulk {}: {} requested, {} found, {} ok, {} failed", action, requestedIds.size(),
+                idsByKeycloakId.size(), succeeded.size() - countFailed(succeeded, failures), failures.size());
+
+        // 3. Per-id outcome, in request order
+        return results(requestedIds, idsByKeycloakId, failures);
+    }
+
+    private static List<BulkItemResult<Long>> results(List<Long> requestedIds, Map<UUID, Long> idsByKeycloakId,
+                                                      Map<Long, String> failures) {
+        Set<Long> existing = new HashSet<>(idsByKeycloakId.values());
+        return dedupe(requestedIds).stream()
+                .map(id -> {
+                    if (!existing.contains(id)) return BulkItemResult.<Long>notFound(id);
+                    if (failures.containsKey(id)) return BulkItemResult.failed(id, failures.get(id));
+                    return BulkItemResult.ok(id);
+                })
+                .toList();
+    }
+
+    // Undo the Keycloak side when the DB rejected the batch, same as the single-user deleteUser does
+    private void compensate(Map<UUID, Long> idsByKeycloakId, List<Long> ids, Consumer<UUID> keycloakCompensation) {
+        if (keycloakCompensation == null) return;
+
+        Set<Long> toRevert = new HashSet<>(ids);
+        List<UUID> keycloakIds = idsByKeycloakId.entrySet().stream()
+                .filter(e -> toRevert.contains(e.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+        Map<UUID, String> stuck = keycloakService.applyToUsers(keycloakIds, keycloakCompensation);
+        if (!stuck.isEmpty()) {
+            log.error("Could not undo the Keycloak change for {} user(s), fix by hand: {}", stuck.size(), stuck.keySet());
+        }
+    }
+
+    private static long countFailed(List<Long> ids, Map<Long, String> failures) {
+        return ids.stream().filter(failures::containsKey).count();
+    }
+
+    private static List<Long> dedupe(List<Long> ids) {
+        return new ArrayList<>(new LinkedHashSet<>(ids));
+    }
+}
@@ -0,0 +1,248 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.dto.UserAuditEntry;
+import com.gigtasker.userservice.dto.UserUpdateDTO;
+import com.gigtasker.userservice.enums.UserChangeType;
+import com.gigtasker.userservice.util.MpscRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit history of user mutations (profile, roles, status) in {@code user_audit_log}.
+ * <p>
+ * Request threads only pay for one CAS into a bounded {@link MpscRingBuffer}, and only once their transaction
+ * has committed. A single background thread drains the buffer and appends in JDBC batches. If the buffer is full
+ * the entry is dropped and counted instead of blocking the caller ({@code user.audit.dropped}, tagged with the
+ * reason), so an audit backlog can never slow down the API.
+ */
+@Slf4j
+@Service
+public class UserAuditTrail {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO user_audit_log (occurred_at, action, user_id, keycloak_id, actor, details)
+            VALUES (?, ?, ?, ?, ?, CAST(? AS jsonb))
+            """;
+
+    // Rows that landed in the default partition for a month that now gets its own partition
+    private static final String MOVE_SQL = """
+            WITH moved AS (
+                DELETE FROM user_audit_log_default
+                WHERE occurred_at >= CAST(? AS timestamptz) AND occurred_at < CAST(? AS timestamptz)
+                RETURNING id, occurred_at, action, user_id, keycloak_id, actor, details
+            )
+            INSERT INTO %s (id, occurred_at, action, user_id, keycloak_id, actor, details)
+            SELECT id, occurred_at, action, user_id, keycloak_id, actor, details FROM moved
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+    private final MpscRingBuffer<UserAuditEntry> buffer;
+
+    private final Counter recorded;
+    private final Counter droppedFull;
+    private final Counter droppedFlush;
+    private final Counter flushed;
+    private final Timer flushTimer;
+    private final Counter partitionFailures;
+
+    @Value("${app.audit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.audit.flush-interval:200ms}")
+    private Duration flushInterval;
+
+    private Thread flusher;
+    private volatile boolean running = true;
+
+    public UserAuditTrail(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                          JsonMapper jsonMapper, MeterRegistry meterRegistry,
+                          @Value("${app.audit.buffer-capacity:65536}") int bufferCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jsonMapper = jsonMapper;
+        this.buffer = new MpscRingBuffer<>(bufferCapacity);
+        this.recorded = meterRegistry.counter("user.audit.recorded");
+        this.droppedFull = meterRegistry.counter("user.audit.dropped", "reason", "buffer_full");
+        this.droppedFlush = meterRegistry.counter("user.audit.dropped", "reason", "flush_failed");
+        this.flushed = meterRegistry.counter("user.audit.flushed");
+        this.flushTimer = meterRegistry.timer("user.audit.flush");
+        this.partitionFailures = meterRegistry.counter("user.audit.partition.failures");
+        meterRegistry.gauge("user.audit.buffer.depth", buffer, MpscRingBuffer::size);
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Thread.ofPlatform().name("user-audit-flusher").daemon().start(this::flushLoop);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Records a change made by the current caller. Inside a transaction the entry is buffered after commit
+     * (a rolled-back change leaves no audit row); outside one it is buffered right away.
+     */
+    public void record(UserChangeType action, Long userId, UUID keycloakId, Map<String, Object> details) {
+        UserAuditEntry entry = new UserAuditEntry(Instant.now(), action, userId, keycloakId, currentActor(), details);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(entry);
+                }
+            });
+        } else {
+            enqueue(entry);
+        }
+    }
+
+    // Audit details for a PATCH: only the fields the caller actually sent
+    public static Map<String, Object> profileChanges(UserUpdateDTO updates) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        if (updates.firstName() != null) details.put("firstName", updates.firstName());
+        if (updates.lastName() != null) details.put("lastName", updates.lastName());
+        if (updates.dateOfBirth() != null) details.put("dateOfBirth", updates.dateOfBirth().toString());
+        if (updates.genderId() != null) details.put("genderId", updates.genderId());
+        if (updates.countryId() != null) details.put("countryId", updates.countryId());
+        return details;
+    }
+
+    // After Liquibase has created the table
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        ensurePartitions();
+    }
+
+    /**
+     * Keeps this month's and next month's partitions in place so rows never land in the default partition.
+     * Postgres refuses to create a partition while the default one holds rows in its range (e.g. after this job
+     * was down over a month boundary), so those rows are moved into the new table before it is attached. A
+     * failure is counted in {@code user.audit.partition.failures} and retried on the next run.
+     */
+    @Scheduled(cron = "${app.audit.partition-cron:0 0 2 * * *}")
+    public void ensurePartitions() {
+        YearMonth now = YearMonth.now(ZoneOffset.UTC);
+        for (YearMonth month : List.of(now, now.plusMonths(1))) {
+            String partition = "user_audit_log_y%dm%02d".formatted(month.getYear(), month.getMonthValue());
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        createPartition(partition, month.atDay(1).toString(), month.plusMonths(1).atDay(1).toString()));
+            } catch (Exception e) {
+                partitionFailures.increment();
+                log.error("❌ Could not create audit partition {}", partition, e);
+            }
+        }
+    }
+
+    private void createPartition(String partition, String from, String to) {
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition))) {
+            return;
+        }
+        String bounds = " FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+
+        // Blocks inserts into the default partition until the new one is attached, so nothing slips in between
+        jdbcTemplate.execute("LOCK TABLE user_audit_log_default IN EXCLUSIVE MODE");
+        boolean stranded = Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM user_audit_log_default
+                               WHERE occurred_at >= CAST(? AS timestamptz) AND occurred_at < CAST(? AS timestamptz))
+                """, Boolean.class, from, to));
+        if (!stranded) {
+            jdbcTemplate.execute("CREATE TABLE " + partition + " PARTITION OF user_audit_log" + bounds);
+            return;
+        }
+
+        jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE user_audit_log INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        // Lets the append-only trigger accept this one DELETE (changelog 010)
+        jdbcTemplate.execute("SET LOCAL app.audit_log_maintenance = 'on'");
+        int moved = jdbcTemplate.update(MOVE_SQL.formatted(partition), from, to);
+        jdbcTemplate.execute("ALTER TABLE user_audit_log ATTACH PARTITION " + partition + bounds);
+        log.warn("Moved {} audit row(s) from the default partition into {}", moved, partition);
+    }
+
+    private void enqueue(UserAuditEntry entry) {
+        if (buffer.offer(entry)) {
+            recorded.increment();
+        } else {
+            droppedFull.increment();
+        }
+    }
+
+    private String currentActor() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof Jwt jwt) {
+            return jwt.getSubject();
+        }
+        return "system";
+    }
+
+    private void flushLoop() {
+        List<UserAuditEntry> batch = new ArrayList<>(batchSize);
+        while (running || buffer.size() > 0) {
+            buffer.drainTo(batch, batchSize);
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(flushInterval.toNanos());
+                continue;
+            }
+            try {
+                flushTimer.record(() -> write(batch));
+                flushed.increment(batch.size());
+            } catch (Exception e) {
+                // DB unavailable: the batch is lost, but counted
+                droppedFlush.increment(batch.size());
+                log.error("Failed to write {} audit entr(ies)", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<UserAuditEntry> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, entry) -> {
+            ps.setTimestamp(1, Timestamp.from(entry.occurredAt()));
+            ps.setString(2, entry.action().name());
+            ps.setObject(3, entry.userId(), Types.BIGINT);
+            ps.setObject(4, entry.keycloakId());
+            ps.setString(5, entry.actor());
+            ps.setString(6, entry.details() == null ? null : jsonMapper.writeValueAsString(entry.details()));
+        });
+    }
+}
@@ -0,0 +1,200 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.dto.BulkItemResult;
+import com.gigtasker.userservice.dto.BulkUserUpdate;
+import com.gigtasker.userservice.dto.UserChangedEvent;
+import com.gigtasker.userservice.dto.UserUpdateDTO;
+import com.gigtasker.userservice.enums.BulkItemStatus;
+import com.gigtasker.userservice.enums.UserChangeType;
+import com.gigtasker.userservice.repository.UserRepository;
+import com.gigtasker.userservice.repository.UserRepository.UserKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.InputStream;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * Bulk profile updates (admin tooling, data-correction jobs).
+ * <p>
+ * The body is read as a stream of {@link BulkUserUpdate} items and handled in chunks: one query resolves the
+ * chunk's keycloak ids, gender/country ids are checked against the {@link ReferenceIndex}, and the rows are
+ * written with a single JDBC batch of {@code COALESCE} updates (null = leave the column alone, like PATCH).
+ * Each chunk is its own transaction, so a bad chunk doesn't roll back the ones before it.
+ */
+@Slf4j
+@Service
+public class UserBulkUpdateService {
+
+    private static final String UPDATE_SQL = """
+            UPDATE users SET
+                first_name = COALESCE(?, first_name),
+                last_name = COALESCE(?, last_name),
+                date_of_birth = COALESCE(?, date_of_birth),
+                gender_id = COALESCE(?, gender_id),
+                country_id = COALESCE(?, country_id)
+            WHERE id = ? AND is_deleted = false
+            """;
+
+    private record Target(UUID keycloakId, Long userId, UserUpdateDTO updates) {}
+
+    private final UserRepository userRepository;
+    private final ReferenceIndex referenceIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonMapper jsonMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserAuditTrail auditTrail;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.bulk-update.chunk-size:1000}")
+    private int chunkSize;
+
+    public UserBulkUpdateService(UserRepository userRepository, ReferenceIndex referenceIndex,
+                                 JdbcTemplate jdbcTemplate, JsonMapper jsonMapper,
+                                 ApplicationEventPublisher eventPublisher, UserAuditTrail auditTrail,
+                                 PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.referenceIndex = referenceIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonMapper = jsonMapper;
+        this.eventPublisher = eventPublisher;
+        this.auditTrail = auditTrail;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Applies every update in {@code body} (NDJSON or a JSON array) and returns one result per item, in input
+     * order. If the input turns malformed part-way, the chunks already read are still applied and the last
+     * result describes where parsing stopped.
+     */
+    public List<BulkItemResult<UUID>> updateUsers(InputStream body) {
+        List<BulkItemResult<UUID>> results = new ArrayList<>();
+        List<BulkUserUpdate> chunk = new ArrayList<>(chunkSize);
+        int read = 0;
+
+        try (MappingIterator<BulkUserUpdate> items = jsonMapper.readerFor(BulkUserUpdate.class).readValues(body)) {
+            while (items.hasNextValue()) {
+                chunk.add(items.nextValue());
+                read++;
+                if (chunk.size() == chunkSize) {
+                    results.addAll(applyChunk(chunk));
+                    chunk.clear();
+                }
+            }
+        } catch (JacksonException e) {
+            results.addAll(applyChunk(chunk));
+            chunk.clear();
+            results.add(BulkItemResult.failed(null, "Malformed item #" + (read + 1) + ": " + e.getOriginalMessage()));
+        }
+        results.addAll(applyChunk(chunk));
+
+        long ok = results.stream().filter(r -> r.status() == BulkItemStatus.OK).count();
+        log.info("Bulk profile update: {} item(s), {} ok, {} not ok", read, ok, results.size() - ok);
+        return results;
+    }
+
+    private List<BulkItemResult<UUID>> applyChunk(List<BulkUserUpdate> chunk) {
+        if (chunk.isEmpty()) return List.of();
+
+        Set<UUID> keycloakIds = new HashSet<>();
+        for (BulkUserUpdate item : chunk) {
+            if (item.keycloakId() != null) keycloakIds.add(item.keycloakId());
+        }
+        Map<UUID, Long> idsByKeycloakId = new HashMap<>();
+        if (!keycloakIds.isEmpty()) {
+            for (UserKeys keys : userRepository.findLiveKeysByKeycloakIdIn(keycloakIds)) {
+                idsByKeycloakId.put(keys.getKeycloakId(), keys.getId());
+            }
+        }
+
+        // Per-item outcome, in input order; OK slots may still flip to NOT_FOUND after the batch runs
+        List<BulkItemResult<UUID>> results = new ArrayList<>(chunk.size());
+        List<Target> targets = new ArrayList<>();
+        List<Integer> targetSlots = new ArrayList<>();
+
+        for (BulkUserUpdate item : chunk) {
+            String invalid = validate(item);
+            Long userId = item.keycloakId() == null ? null : idsByKeycloakId.get(item.keycloakId());
+            if (invalid != null) {
+                results.add(BulkItemResult.failed(item.keycloakId(), invalid));
+            } else if (userId == null) {
+                results.add(BulkItemResult.notFound(item.keycloakId()));
+            } else {
+                targetSlots.add(results.size());
+                results.add(BulkItemResult.ok(item.keycloakId()));
+                targets.add(new Target(item.keycloakId(), userId, item.updates()));
+            }
+        }
+        if (targets.isEmpty()) return results;
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] counts = batchUpdate(targets);
+                for (int i = 0; i < targets.size(); i++) {
+                    Target target = targets.get(i);
+                    if (counts[i] == 0) {
+                        // Soft-deleted between the key lookup and the update
+                        results.set(targetSlots.get(i), BulkItemResult.notFound(target.keycloakId()));
+                    } else {
+                        eventPublisher.publishEvent(
+                                UserChangedEvent.of(UserChangeType.UPDATED, target.userId(), target.keycloakId()));
+                        auditTrail.record(UserChangeType.UPDATED, target.userId(), target.keycloakId(),
+                                UserAuditTrail.profileChanges(target.updates()));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            log.error("Bulk profile update chunk of {} user(s) failed", targets.size(), e);
+            for (int i = 0; i < targets.size(); i++) {
+                results.set(targetSlots.get(i), BulkItemResult.failed(targets.get(i).keycloakId(), "Database update failed"));
+            }
+        }
+        return results;
+    }
+
+    private int[] batchUpdate(List<Target> targets) {
+        int[][] perBatch = jdbcTemplate.batchUpdate(UPDATE_SQL, targets, targets.size(), this::bind);
+        int[] counts = perBatch.length == 0 ? new int[0] : perBatch[0];
+        for (int i = 0; i < counts.length; i++) {
+            // Drivers may report "succeeded, count unknown" for batched statements
+            if (counts[i] == Statement.SUCCESS_NO_INFO) counts[i] = 1;
+        }
+        return counts;
+    }
+
+    private void bind(PreparedStatement ps, Target target) throws SQLException {
+        UserUpdateDTO updates = target.updates();
+        ps.setObject(1, updates.firstName(), Types.VARCHAR);
+        ps.setObject(2, updates.lastName(), Types.VARCHAR);
+        ps.setObject(3, updates.dateOfBirth() == null ? null : Date.valueOf(updates.dateOfBirth()), Types.DATE);
+        ps.setObject(4, updates.genderId(), Types.BIGINT);
+        ps.setObject(5, updates.countryId(), Types.BIGINT);
+        ps.setLong(6, target.userId());
+    }
+
+    private String validate(BulkUserUpdate item) {
+        if (item.keycloakId() == null) return "keycloakId is required";
+        UserUpdateDTO updates = item.updates();
+        if (updates == null) return "updates are required";
+        if (updates.genderId() != null && referenceIndex.findGenderById(updates.genderId()) == null) {
+            return "Invalid Gender ID";
+        }
+        if (updates.countryId() != null && referenceIndex.findCountryById(updates.countryId()) == null) {
+            return "Invalid Country ID";
+        }
+        return null;
+    }
+}
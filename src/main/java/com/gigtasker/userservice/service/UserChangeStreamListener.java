@@ -0,0 +1,125 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.dto.UserChangeFeedEntry;
+import com.gigtasker.userservice.enums.UserChangeType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Follows the user change stream ({@link UserEventPublisher}) so that changes committed on other instances
+ * invalidate this instance's {@link UserLookupService} caches within {@code app.user-lookup.invalidation.poll-interval}
+ * instead of one cache TTL. Our own events come back too; invalidating twice is harmless.
+ * <p>
+ * Starts at the end of the stream. If Redis is unreachable the offset is kept and the listener catches up once it
+ * is back; until then the cache TTLs bound the staleness.
+ */
+@Slf4j
+@Service
+public class UserChangeStreamListener {
+
+    private final UserEventPublisher eventPublisher;
+    private final UserLookupService userLookupService;
+    private final Counter applied;
+    private final Counter failures;
+
+    @Value("${app.user-lookup.invalidation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.user-lookup.invalidation.poll-interval:500ms}")
+    private Duration pollInterval;
+
+    @Value("${app.user-lookup.invalidation.batch-size:500}")
+    private int batchSize;
+
+    private Thread poller;
+    private volatile boolean running = true;
+    private String offset;
+
+    public UserChangeStreamListener(UserEventPublisher eventPublisher, UserLookupService userLookupService,
+                                    MeterRegistry meterRegistry) {
+        this.eventPublisher = eventPublisher;
+        this.userLookupService = userLookupService;
+        this.applied = meterRegistry.counter("user.lookup.invalidations", "source", "stream");
+        this.failures = meterRegistry.counter("user.lookup.invalidation.failures");
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            log.info("Cross-instance cache invalidation is disabled in config.");
+            return;
+        }
+        poller = Thread.ofPlatform().name("user-change-listener").daemon().start(this::pollLoop);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (poller != null) {
+            LockSupport.unpark(poller);
+            poller.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void pollLoop() {
+        boolean failing = false;
+        while (running) {
+            int read = 0;
+            try {
+                if (offset == null) {
+                    offset = eventPublisher.latestOffset();
+                }
+                List<UserChangeFeedEntry> entries = eventPublisher.readFrom(offset, batchSize);
+                for (UserChangeFeedEntry entry : entries) {
+                    apply(entry);
+                    offset = entry.offset();
+                }
+                read = entries.size();
+                if (failing) {
+                    log.info("User change stream reachable again, resumed after {}", offset);
+                    failing = false;
+                }
+            } catch (Exception e) {
+                failures.increment();
+                // Once per outage, not once per poll
+                if (!failing) {
+                    log.warn("Could not read the user change stream, retrying: {}", e.getMessage());
+                    failing = true;
+                }
+            }
+            // A full batch means there is more to catch up on
+            if (read < batchSize) {
+                LockSupport.parkNanos(pollInterval.toNanos());
+            }
+        }
+    }
+
+    private void apply(UserChangeFeedEntry entry) {
+        UserChangeType type;
+        try {
+            type = UserChangeType.valueOf(entry.type());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            // Written by a newer version: a plain invalidation is still correct
+            type = null;
+        }
+        UUID keycloakId = null;
+        try {
+            keycloakId = entry.keycloakId() != null ? UUID.fromString(entry.keycloakId()) : null;
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed keycloakId in change {}: {}", entry.offset(), entry.keycloakId());
+        }
+        userLookupService.invalidate(type, entry.userId(), keycloakId);
+        applied.increment();
+    }
+}
@@ -0,0 +1,159 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.dto.UserChangeFeedEntry;
+import com.gigtasker.userservice.dto.UserChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forwards {@link UserChangedEvent}s to a Redis Stream so other services can keep their own copy of user data
+ * instead of polling {@code /batch}.
+ * <p>
+ * Events are taken only after the transaction commits, queued, and written by a single flusher thread in
+ * pipelined batches. One writer means the stream order matches commit order, which gives consumers per-user
+ * ordering. Consumers resume from the last stream id they processed ({@link #readFrom}).
+ */
+@Slf4j
+@Service
+public class UserEventPublisher {
+
+    private final StringRedisTemplate redisTemplate;
+    private final Counter published;
+    private final Counter dropped;
+
+    @Value("${app.events.stream-key:user-service:user-changes}")
+    private String streamKey;
+
+    @Value("${app.events.max-length:1000000}")
+    private long maxLength;
+
+    @Value("${app.events.batch-size:200}")
+    private int batchSize;
+
+    private final BlockingQueue<UserChangedEvent> queue;
+    private Thread flusher;
+    private volatile boolean running = true;
+
+    public UserEventPublisher(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry,
+                              @Value("${app.events.queue-capacity:10000}") int queueCapacity) {
+        this.redisTemplate = redisTemplate;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.published = meterRegistry.counter("user.events.published");
+        this.dropped = meterRegistry.counter("user.events.dropped");
+        meterRegistry.gauge("user.events.queued", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Thread.ofPlatform().name("user-events-flusher").daemon().start(this::flushLoop);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    // fallbackExecution: callers outside a transaction still get their event out
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (!queue.offer(event)) {
+            dropped.increment();
+            log.warn("User event queue full, dropped {} for user {}", event.type(), event.userId());
+        }
+    }
+
+    public List<UserChangeFeedEntry> readFrom(String afterOffset, int count) {
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(streamKey,
+                Range.rightUnbounded(Range.Bound.exclusive(afterOffset)),
+                Limit.limit().count(count));
+        if (records == null) return List.of();
+
+        return records.stream()
+                .map(r -> {
+                    Map<Object, Object> v = r.getValue();
+                    return new UserChangeFeedEntry(
+                            r.getId().getValue(),
+                            (String) v.get("type"),
+                            v.get("userId") != null && !"null".equals(v.get("userId"))
+                                    ? Long.valueOf((String) v.get("userId")) : null,
+                            "null".equals(v.get("keycloakId")) ? null : (String) v.get("keycloakId"),
+                            (String) v.get("occurredAt"));
+                })
+                .toList();
+    }
+
+    // Id of the newest entry, to start following the stream from now on ("0-0" while it is empty)
+    public String latestOffset() {
+        List<MapRecord<String, Object, Object>> last = redisTemplate.opsForStream().reverseRange(streamKey,
+                Range.unbounded(), Limit.limit().count(1));
+        return last == null || last.isEmpty() ? "0-0" : last.getFirst().getId().getValue();
+    }
+
+    private void flushLoop() {
+        List<UserChangedEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                UserChangedEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Redis hiccup: the batch is lost, consumers can resync via /batch
+                dropped.increment(batch.size());
+                log.error("Failed to publish {} user event(s)", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<UserChangedEvent> batch) {
+        XAddOptions options = XAddOptions.maxlen(maxLength).approximateTrimming(true);
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (UserChangedEvent event : batch) {
+                conn.xAdd(StreamRecords.string(toFields(event)).withStreamKey(streamKey), options);
+            }
+            return null;
+        });
+        published.increment(batch.size());
+    }
+
+    private static Map<String, String> toFields(UserChangedEvent event) {
+        return Map.of(
+                "type", event.type().name(),
+                "userId", String.valueOf(event.userId()),
+                "keycloakId", String.valueOf(event.keycloakId()),
+                "occurredAt", event.occurredAt().toString()
+        );
+    }
+}
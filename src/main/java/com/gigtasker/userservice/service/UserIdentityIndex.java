@@ -0,0 +1,170 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.repository.UserRepository;
+import com.gigtasker.userservice.util.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filters over every username and email in {@code users} (lower-cased, soft-deleted rows included because
+ * the unique constraints include them).
+ * <p>
+ * A negative answer is definitive and costs no DB round trip, which is the common case for signup-form checks
+ * and registrations. A positive answer may be a false positive, so it is confirmed against the unique index.
+ * The filters are built at startup by streaming the two columns and updated on every register/sync.
+ * <p>
+ * A rebuild must not lose names: {@link #record} applies once the caller's transaction has completed, and
+ * under the same lock that installs and swaps the filter being built. A name committed before the rebuild
+ * starts is in the DB stream; one recorded after that goes into the new filter directly.
+ */
+@Slf4j
+@Service
+public class UserIdentityIndex {
+
+    private record Filters(BloomFilter usernames, BloomFilter emails) {}
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTx;
+
+    private final long minCapacity;
+    private final double falsePositiveRate;
+
+    // Guards building/current transitions against record(); readers don't take it
+    private final Object swapLock = new Object();
+    private volatile Filters current;
+    private volatile Filters building;
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public UserIdentityIndex(UserRepository userRepository, PlatformTransactionManager transactionManager,
+                             @Value("${app.identity-index.min-capacity:100000}") long minCapacity,
+                             @Value("${app.identity-index.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.minCapacity = minCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long count = userRepository.countIncludingDeleted();
+        // Leave room to grow so we don't rebuild on the next few registrations
+        long capacity = Math.max(minCapacity, count * 2);
+        Filters next = new Filters(BloomFilter.create(capacity, falsePositiveRate),
+                BloomFilter.create(capacity, falsePositiveRate));
+
+        // Registrations recorded from here on go into the new filters too; anything recorded earlier was
+        // committed earlier, so the stream below (which starts after this) sees it
+        long recordedBefore;
+        synchronized (swapLock) {
+            building = next;
+            recordedBefore = inserted.get();
+        }
+        try {
+            readOnlyTx.executeWithoutResult(status -> {
+                try (Stream<String> names = userRepository.streamAllUsernames();
+                     Stream<String> mails = userRepository.streamAllEmails()) {
+                    names.forEach(next.usernames()::put);
+                    mails.forEach(next.emails()::put);
+                }
+            });
+            synchronized (swapLock) {
+                current = next;
+                // Keep what was recorded while we streamed
+                inserted.set(count + inserted.get() - recordedBefore);
+            }
+        } finally {
+            synchronized (swapLock) {
+                building = null;
+            }
+        }
+        log.info("Identity index loaded: {} users, capacity {}", count, capacity);
+    }
+
+    public boolean isUsernameTaken(String username) {
+        if (username == null) return false;
+        String normalized = normalize(username);
+        Filters filters = current;
+        if (filters != null && !filters.usernames().mightContain(normalized)) {
+            return false;
+        }
+        return userRepository.existsByUsernameIn(List.of(username.trim(), normalized));
+    }
+
+    public boolean isEmailTaken(String email) {
+        if (email == null) return false;
+        String normalized = normalize(email);
+        Filters filters = current;
+        if (filters != null && !filters.emails().mightContain(normalized)) {
+            return false;
+        }
+        return userRepository.existsByEmailIn(List.of(email.trim(), normalized));
+    }
+
+    public boolean isTaken(String username, String email) {
+        return isUsernameTaken(username) || isEmailTaken(email);
+    }
+
+    /**
+     * Adds a username/email that now exists in {@code users}. Inside a transaction it is applied once the
+     * transaction completes (either way: on rollback it's a harmless false positive, and a unique-constraint
+     * loser records a name another transaction committed).
+     */
+    public void record(String username, String email) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    apply(username, email);
+                }
+            });
+        } else {
+            apply(username, email);
+        }
+    }
+
+    private void apply(String username, String email) {
+        Filters filters;
+        long count;
+        synchronized (swapLock) {
+            put(current, username, email);
+            put(building, username, email);
+            filters = current;
+            count = inserted.incrementAndGet();
+        }
+
+        if (filters != null && count > filters.usernames().expectedInsertions()
+                && rebuilding.compareAndSet(false, true)) {
+            // Past capacity the false-positive rate climbs, so resize in the background
+            CompletableFuture.runAsync(this::load).whenComplete((v, ex) -> {
+                rebuilding.set(false);
+                if (ex != null) log.error("Identity index rebuild failed", ex);
+            });
+        }
+    }
+
+    private static void put(Filters filters, String username, String email) {
+        if (filters == null) return;
+        if (username != null) filters.usernames().put(normalize(username));
+        if (email != null) filters.emails().put(normalize(email));
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
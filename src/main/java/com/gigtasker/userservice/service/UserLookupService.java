@@ -0,0 +1,208 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.common.dto.UserDTO;
+import com.gigtasker.userservice.dto.UserChangedEvent;
+import com.gigtasker.userservice.enums.UserChangeType;
+import com.gigtasker.userservice.enums.UserField;
+import com.gigtasker.userservice.exceptions.ResourceNotFoundException;
+import com.gigtasker.userservice.service.UserAccessTelemetry.Operation;
+import com.gigtasker.userservice.util.ExpiringCache;
+import com.gigtasker.userservice.util.NegativeCache;
+import com.gigtasker.userservice.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Single-user lookups by id (full or {@code ?fields=} sparse) for callers that hammer the same keys, e.g. other
+ * services resolving stale references, and the cached {@code /me} read path.
+ * <p>
+ * Concurrent misses for one key share a single query ({@link SingleFlight}, in-flight only, so results are never
+ * stale). Ids that don't exist are remembered for {@code app.user-lookup.negative-ttl} so repeated 404s stay off
+ * Postgres; {@code /me} is never negatively cached, since a caller without a profile is about to create one.
+ * Changes committed on this instance invalidate right away, changes from other instances arrive through the
+ * Redis change stream ({@link UserChangeStreamListener}); the TTLs only bound staleness while Redis is down.
+ * This sits outside {@link UserService}'s transactions on purpose: callers waiting on someone else's query
+ * don't hold a connection.
+ */
+@Service
+public class UserLookupService {
+
+    private final UserService userService;
+    private final UserAccessTelemetry accessTelemetry;
+
+    // Sparse reads share a query only when they ask for the same fields
+    private record FieldsKey(Long id, Set<UserField> fields) {}
+
+    private final SingleFlight<Long, UserDTO> byIdFlights;
+    private final SingleFlight<UUID, UserDTO> byKeycloakIdFlights;
+    private final SingleFlight<FieldsKey, Map<String, Object>> fieldsByIdFlights;
+
+    private final NegativeCache<Long> missingIds;
+
+    // /me responses by Keycloak id
+    private final ExpiringCache<UUID, UserDTO> meProfiles;
+    private final Counter meHits;
+    private final Counter meMisses;
+
+    private final MeterRegistry meterRegistry;
+
+    public UserLookupService(UserService userService, UserAccessTelemetry accessTelemetry, MeterRegistry meterRegistry,
+                             @Value("${app.user-lookup.negative-ttl:30s}") Duration negativeTtl,
+                             @Value("${app.user-lookup.negative-max-entries:100000}") int negativeMaxEntries,
+                             @Value("${app.user-lookup.me-ttl:60s}") Duration meTtl,
+                             @Value("${app.user-lookup.me-max-entries:50000}") int meMaxEntries) {
+        this.userService = userService;
+        this.accessTelemetry = accessTelemetry;
+        this.meterRegistry = meterRegistry;
+
+        this.meProfiles = new ExpiringCache<>(meTtl, meMaxEntries);
+        this.meHits = meterRegistry.counter("user.lookup.me.cache", "result", "hit");
+        this.meMisses = meterRegistry.counter("user.lookup.me.cache", "result", "miss");
+        meterRegistry.gauge("user.lookup.me.cache.size", meProfiles, ExpiringCache::size);
+
+        this.byIdFlights = new SingleFlight<>(Duration.ZERO, coalesced("id"));
+        this.byKeycloakIdFlights = new SingleFlight<>(Duration.ZERO, coalesced("keycloakId"));
+        this.fieldsByIdFlights = new SingleFlight<>(Duration.ZERO, coalesced("id"));
+
+        this.missingIds = negativeCache("id", negativeTtl, negativeMaxEntries);
+    }
+
+    public UserDTO getUserById(Long id) {
+        accessTelemetry.record(Operation.GET_BY_ID, id);
+        return lookup("id", id, missingIds, byIdFlights, id, () -> userService.getUserById(id));
+    }
+
+    public List<UserDTO> findUsersByIds(List<Long> ids) {
+        accessTelemetry.recordBatch(ids);
+        return userService.findUsersByIds(ids);
+    }
+
+    // A missing id is missing whatever fields were asked for, so this shares the full lookup's negative cache
+    public Map<String, Object> getUserFieldsById(Long id, Set<UserField> fields) {
+        accessTelemetry.record(Operation.GET_BY_ID, id);
+        return lookup("id", id, missingIds, fieldsByIdFlights, new FieldsKey(id, fields),
+                () -> userService.getUserFieldsById(id, fields));
+    }
+
+    public List<Map<String, Object>> findUserFieldsByIds(List<Long> ids, Set<UserField> fields) {
+        accessTelemetry.recordBatch(ids);
+        return userService.findUserFieldsByIds(ids, fields);
+    }
+
+    /**
+     * {@code /me} for the authenticated caller, keyed by the token's {@code sub}. A cached profile is returned as
+     * long as its roles still match the token's; otherwise (or on a miss) it is read through the covered index,
+     * and only a real role difference goes through {@link UserService#getMe}'s write path.
+     */
+    public UserDTO getMe() {
+        Jwt jwt = (Jwt) Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication()).getPrincipal();
+        UUID keycloakId = UUID.fromString(jwt.getSubject());
+        Set<String> tokenRoles = UserService.tokenRoleNames(jwt);
+
+        UserDTO cached = meProfiles.get(keycloakId);
+        if (cached != null && tokenRoles.equals(Set.copyOf(cached.roles()))) {
+            meHits.increment();
+            accessTelemetry.record(Operation.GET_ME, cached.id());
+            return cached;
+        }
+        meMisses.increment();
+
+        long stamp = meProfiles.stamp();
+        UserDTO profile = execute(byKeycloakIdFlights, keycloakId,
+                () -> userService.getProfileByKeycloakId(keycloakId));
+        if (profile == null) {
+            throw new ResourceNotFoundException("User profile not found. Please register via the app.");
+        }
+        if (!tokenRoles.equals(Set.copyOf(profile.roles()))) {
+            profile = userService.getMe();
+            // The sync's own ROLES_CHANGED invalidation has already run (after commit, on this thread)
+            stamp = meProfiles.stamp();
+        }
+        meProfiles.put(keycloakId, profile, stamp);
+        accessTelemetry.record(Operation.GET_ME, profile.id());
+        return profile;
+    }
+
+    /**
+     * Loads {@code keycloakId}'s profile into the {@code /me} cache without recording an access (warm-up). The
+     * roles are still checked against the token on the first real {@link #getMe()}.
+     */
+    public void primeMe(UUID keycloakId) {
+        long stamp = meProfiles.stamp();
+        UserDTO profile = userService.getProfileByKeycloakId(keycloakId);
+        if (profile != null) {
+            meProfiles.put(keycloakId, profile, stamp);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.type(), event.userId(), event.keycloakId());
+    }
+
+    // A user that now exists must not keep answering 404; /me must not serve old data. Also fed by other
+    // instances' changes, so this must stay cheap and idempotent.
+    public void invalidate(UserChangeType type, Long userId, UUID keycloakId) {
+        if (keycloakId != null) {
+            meProfiles.invalidate(keycloakId);
+        } else if (userId != null) {
+            meProfiles.invalidateIf(user -> userId.equals(user.id()));
+        }
+
+        // A null type is a change this version doesn't know: treat it as one that may create the user
+        boolean mayExistNow = type == null || type == UserChangeType.CREATED || type == UserChangeType.UPDATED;
+        if (mayExistNow && userId != null) {
+            missingIds.invalidate(userId);
+        }
+    }
+
+    private <K, F, V> V lookup(String keyType, K key, NegativeCache<K> negatives, SingleFlight<F, V> flights,
+                               F flightKey, Callable<V> loader) {
+        if (negatives.contains(key)) {
+            meterRegistry.counter("user.lookup.negative.hits", "key", keyType).increment();
+            return null;
+        }
+        return execute(flights, flightKey, () -> {
+            long stamp = negatives.stamp();
+            V user = loader.call();
+            if (user == null) negatives.add(key, stamp);
+            return user;
+        });
+    }
+
+    private static <K, V> V execute(SingleFlight<K, V> flights, K key, Callable<V> loader) {
+        try {
+            return flights.execute(key, loader);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("User lookup failed", e);
+        }
+    }
+
+    private Runnable coalesced(String keyType) {
+        Counter counter = meterRegistry.counter("user.lookup.coalesced", "key", keyType);
+        return counter::increment;
+    }
+
+    private <K> NegativeCache<K> negativeCache(String keyType, Duration ttl, int maxEntries) {
+        NegativeCache<K> cache = new NegativeCache<>(ttl, maxEntries);
+        meterRegistry.gauge("user.lookup.negative.size", Tags.of("key", keyType), cache, NegativeCache::size);
+        return cache;
+    }
+}
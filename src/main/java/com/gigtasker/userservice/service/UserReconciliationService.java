@@ -0,0 +1,355 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.dto.ReconciliationReport;
+import com.gigtasker.userservice.dto.UserChangedEvent;
+import com.gigtasker.userservice.entity.Role;
+import com.gigtasker.userservice.enums.RoleType;
+import com.gigtasker.userservice.enums.UserChangeType;
+import com.gigtasker.userservice.repository.UserRepository;
+import com.gigtasker.userservice.repository.UserRepository.UserSyncDigest;
+import com.gigtasker.userservice.repository.UserRepository.UserSyncState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Detects and repairs drift between Keycloak and {@code users}.
+ * <p>
+ * Both sides are reduced to a 64-bit digest per user (email, first/last name, enabled, admin) - Postgres computes
+ * ours in the query - compared page by page, and only users whose digests differ are loaded and diffed field by
+ * field. Ownership per field:
+ * <ul>
+ *   <li>email, names, admin role (GIGTASKER_ADMIN_USERS membership): Keycloak wins, written to Postgres</li>
+ *   <li>enabled: Postgres {@code is_deleted} wins, written to Keycloak</li>
+ * </ul>
+ * Keycloak users with no row here are only counted; importing them is {@link UserSyncService}'s job.
+ * In dry-run mode drift is logged and counted but nothing is written.
+ */
+@Slf4j
+@Service
+public class UserReconciliationService {
+
+    private static final String ADMIN_GROUP = "GIGTASKER_ADMIN_USERS";
+    private static final String PROFILE_SQL = "UPDATE users SET email = ?, first_name = ?, last_name = ? WHERE id = ?";
+
+    private enum Field { EMAIL, NAME, ADMIN_ROLE, ENABLED }
+
+    private record ProfileFix(Long id, UUID keycloakId, String username, String email, String firstName,
+                              String lastName, boolean emailChanged) {}
+
+    // Everything that differs on one page, grouped by how it gets written
+    private static final class PageDrift {
+        final List<ProfileFix> profiles = new ArrayList<>();
+        final Map<Long, UUID> grantAdmin = new HashMap<>();
+        final Map<Long, UUID> revokeAdmin = new HashMap<>();
+        final Map<UUID, Long> enableInKeycloak = new HashMap<>();
+        final Map<UUID, Long> disableInKeycloak = new HashMap<>();
+        int drifted;
+    }
+
+    private final UserRepository userRepository;
+    private final KeycloakService keycloakService;
+    private final RoleService roleService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserAuditTrail auditTrail;
+    private final UserIdentityIndex identityIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Counter checkedCounter;
+    private final Counter missingCounter;
+    private final Timer runTimer;
+
+    @Value("${app.reconciliation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.reconciliation.dry-run:true}")
+    private boolean dryRunByDefault;
+
+    @Value("${app.reconciliation.page-size:500}")
+    private int pageSize;
+
+    public UserReconciliationService(UserRepository userRepository, KeycloakService keycloakService,
+                                     RoleService roleService, JdbcTemplate jdbcTemplate,
+                                     ApplicationEventPublisher eventPublisher, UserAuditTrail auditTrail,
+                                     UserIdentityIndex identityIndex, PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.keycloakService = keycloakService;
+        this.roleService = roleService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.auditTrail = auditTrail;
+        this.identityIndex = identityIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.checkedCounter = meterRegistry.counter("user.reconciliation.checked");
+        this.missingCounter = meterRegistry.counter("user.reconciliation.missing");
+        this.runTimer = meterRegistry.timer("user.reconciliation.run");
+    }
+
+    @Scheduled(cron = "${app.reconciliation.cron:0 15 * * * *}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+        reconcile(dryRunByDefault);
+    }
+
+    public ReconciliationReport reconcile(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Reconciliation already running");
+        }
+        try {
+            return runTimer.record(() -> run(dryRun));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ReconciliationReport run(boolean dryRun) {
+        log.info("🔄 Starting Keycloak reconciliation (dryRun={})", dryRun);
+
+        Long adminRoleId = roleService.findRoleByName(RoleType.ROLE_ADMIN)
+                .map(Role::getId)
+                .orElseThrow(() -> new RuntimeException("ROLE_ADMIN missing"));
+        Set<UUID> admins = keycloakService.getGroupMemberIds(ADMIN_GROUP, pageSize);
+
+        int checked = 0, drifted = 0, corrected = 0, failed = 0, missing = 0;
+
+        for (int first = 0; ; first += pageSize) {
+            List<UserRepresentation> page = keycloakService.listUsers(first, pageSize);
+            if (page.isEmpty()) break;
+
+            Map<UUID, UserRepresentation> kcUsers = new HashMap<>();
+            for (UserRepresentation rep : page) {
+                kcUsers.put(UUID.fromString(rep.getId()), rep);
+            }
+            List<UserSyncDigest> digests = userRepository.findSyncDigestsByKeycloakIdIn(kcUsers.keySet());
+
+            // Unchanged users stop here: one 64-bit comparison, no row fetched
+            List<UUID> suspects = new ArrayList<>();
+            for (UserSyncDigest db : digests) {
+                UserRepresentation kc = kcUsers.get(db.getKeycloakId());
+                // Without a Keycloak email ours is kept, which the Keycloak-side digest can't know: compare in full
+                if (kc.getEmail() == null || digest(kc.getEmail(), kc.getFirstName(), kc.getLastName(),
+                        Boolean.TRUE.equals(kc.isEnabled()), admins.contains(db.getKeycloakId())) != db.getDigest()) {
+                    suspects.add(db.getKeycloakId());
+                }
+            }
+            List<UserSyncState> dbUsers = suspects.isEmpty()
+                    ? List.of() : userRepository.findSyncStateByKeycloakIdIn(suspects);
+
+            PageDrift drift = diff(kcUsers, dbUsers, admins);
+            checked += digests.size();
+            missing += kcUsers.size() - digests.size();
+            drifted += drift.drifted;
+
+            if (!dryRun && drift.drifted > 0) {
+                int pageFailed = apply(drift, adminRoleId);
+                failed += pageFailed;
+                corrected += drift.drifted - pageFailed;
+            }
+            if (page.size() < pageSize) break;
+        }
+
+        checkedCounter.increment(checked);
+        missingCounter.increment(missing);
+        log.info("✅ Reconciliation done (dryRun={}): {} checked, {} drifted, {} corrected, {} failed, {} missing in DB",
+                dryRun, checked, drifted, corrected, failed, missing);
+        return new ReconciliationReport(dryRun, checked, drifted, corrected, failed, missing);
+    }
+
+    private PageDrift diff(Map<UUID, UserRepresentation> kcUsers, List<UserSyncState> dbUsers, Set<UUID> admins) {
+        PageDrift drift = new PageDrift();
+
+        for (UserSyncState db : dbUsers) {
+            UserRepresentation kc = kcUsers.get(db.getKeycloakId());
+            boolean kcAdmin = admins.contains(db.getKeycloakId());
+            boolean kcEnabled = Boolean.TRUE.equals(kc.isEnabled());
+            // A Keycloak account without an email never overwrites ours
+            String kcEmail = kc.getEmail() != null ? kc.getEmail() : db.getEmail();
+
+            boolean emailDiffers = !normalizeEmail(kcEmail).equals(normalizeEmail(db.getEmail()));
+            boolean nameDiffers = !Objects.equals(blank(kc.getFirstName()), blank(db.getFirstName()))
+                    || !Objects.equals(blank(kc.getLastName()), blank(db.getLastName()));
+            boolean adminDiffers = kcAdmin != db.getAdmin();
+            boolean enabledDiffers = kcEnabled == db.getDeleted();
+            // The two digests normalize slightly differently (e.g. trim/lower on non-ASCII), so a mismatch is only
+            // a suspect until a field actually differs
+            if (!emailDiffers && !nameDiffers && !adminDiffers && !enabledDiffers) {
+                continue;
+            }
+            drift.drifted++;
+
+            if (emailDiffers || nameDiffers) {
+                drift.profiles.add(new ProfileFix(db.getId(), db.getKeycloakId(), db.getUsername(),
+                        kcEmail, kc.getFirstName(), kc.getLastName(), emailDiffers));
+                if (emailDiffers) countDrift(Field.EMAIL);
+                if (nameDiffers) countDrift(Field.NAME);
+            }
+
+            if (adminDiffers) {
+                (kcAdmin ? drift.grantAdmin : drift.revokeAdmin).put(db.getId(), db.getKeycloakId());
+                countDrift(Field.ADMIN_ROLE);
+            }
+
+            if (enabledDiffers) {
+                (db.getDeleted() ? drift.disableInKeycloak : drift.enableInKeycloak).put(db.getKeycloakId(), db.getId());
+                countDrift(Field.ENABLED);
+            }
+            log.debug("Drift for user {}: email={}, name={}, admin={}, enabled={}", db.getKeycloakId(),
+                    emailDiffers, nameDiffers, adminDiffers, enabledDiffers);
+        }
+        return drift;
+    }
+
+    // Returns how many drifted users could not be fully corrected
+    private int apply(PageDrift drift, Long adminRoleId) {
+        Set<UUID> failedUsers = new HashSet<>();
+
+        // 1. Keycloak -> Postgres, one transaction for the page; if any row fails (e.g. a corrected email that
+        //    another user already has), redo the page one user per transaction so only that user stays drifted
+        try {
+            writeToDatabase(drift.profiles, drift.grantAdmin, drift.revokeAdmin, adminRoleId);
+        } catch (Exception e) {
+            log.warn("⚠️ Reconciliation DB batch failed for {} user(s), retrying one by one", drift.drifted, e);
+            Set<UUID> users = new LinkedHashSet<>();
+            drift.profiles.forEach(fix -> users.add(fix.keycloakId()));
+            users.addAll(drift.grantAdmin.values());
+            users.addAll(drift.revokeAdmin.values());
+            for (UUID user : users) {
+                try {
+                    writeToDatabase(drift.profiles.stream().filter(fix -> fix.keycloakId().equals(user)).toList(),
+                            only(drift.grantAdmin, user), only(drift.revokeAdmin, user), adminRoleId);
+                } catch (Exception userFailure) {
+                    log.error("❌ Reconciliation DB fix failed for user {}", user, userFailure);
+                    failedUsers.add(user);
+                }
+            }
+        }
+
+        // 2. Postgres -> Keycloak (enabled flag), in parallel on the admin executor
+        failedUsers.addAll(keycloakService.applyToUsers(drift.enableInKeycloak.keySet(),
+                id -> keycloakService.setUserEnabled(id, true)).keySet());
+        failedUsers.addAll(keycloakService.applyToUsers(drift.disableInKeycloak.keySet(),
+                id -> keycloakService.setUserEnabled(id, false)).keySet());
+
+        int enabledFixed = 0;
+        for (Map.Entry<UUID, Long> e : concat(drift.enableInKeycloak, drift.disableInKeycloak)) {
+            if (failedUsers.contains(e.getKey())) continue;
+            enabledFixed++;
+            auditTrail.record(UserChangeType.UPDATED, e.getValue(), e.getKey(), Map.of(
+                    "source", "reconciliation", "keycloakEnabled", drift.enableInKeycloak.containsKey(e.getKey())));
+        }
+        meterRegistry.counter("user.reconciliation.corrected", "field", field(Field.ENABLED)).increment(enabledFixed);
+
+        return failedUsers.size();
+    }
+
+    private void writeToDatabase(List<ProfileFix> profiles, Map<Long, UUID> grantAdmin, Map<Long, UUID> revokeAdmin,
+                                 Long adminRoleId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!profiles.isEmpty()) {
+                jdbcTemplate.batchUpdate(PROFILE_SQL, profiles, profiles.size(), (ps, fix) -> {
+                    ps.setString(1, fix.email());
+                    ps.setString(2, fix.firstName());
+                    ps.setString(3, fix.lastName());
+                    ps.setLong(4, fix.id());
+                });
+                profiles.forEach(fix -> {
+                    eventPublisher.publishEvent(UserChangedEvent.of(UserChangeType.UPDATED, fix.id(), fix.keycloakId()));
+                    auditTrail.record(UserChangeType.UPDATED, fix.id(), fix.keycloakId(), Map.of(
+                            "source", "reconciliation", "email", fix.email(),
+                            "firstName", String.valueOf(fix.firstName()), "lastName", String.valueOf(fix.lastName())));
+                    // Applied once the transaction completes, so registration sees the corrected email as taken
+                    if (fix.emailChanged()) {
+                        identityIndex.record(fix.username(), fix.email());
+                    }
+                });
+            }
+            if (!grantAdmin.isEmpty()) {
+                userRepository.addRoleToUsers(grantAdmin.keySet(), adminRoleId);
+            }
+            if (!revokeAdmin.isEmpty()) {
+                userRepository.removeRoleFromUsers(revokeAdmin.keySet(), adminRoleId);
+            }
+            recordRoleChanges(grantAdmin, "added");
+            recordRoleChanges(revokeAdmin, "removed");
+        });
+        meterRegistry.counter("user.reconciliation.corrected", "field", "profile").increment(profiles.size());
+        if (!grantAdmin.isEmpty() || !revokeAdmin.isEmpty()) {
+            meterRegistry.counter("user.reconciliation.corrected", "field", field(Field.ADMIN_ROLE))
+                    .increment(grantAdmin.size() + revokeAdmin.size());
+        }
+    }
+
+    private void recordRoleChanges(Map<Long, UUID> users, String change) {
+        users.forEach((id, kcId) -> {
+            eventPublisher.publishEvent(UserChangedEvent.of(UserChangeType.ROLES_CHANGED, id, kcId));
+            auditTrail.record(UserChangeType.ROLES_CHANGED, id, kcId,
+                    Map.of("source", "reconciliation", change, RoleType.ROLE_ADMIN.name()));
+        });
+    }
+
+    private void countDrift(Field f) {
+        meterRegistry.counter("user.reconciliation.drift", "field", field(f)).increment();
+    }
+
+    private static String field(Field f) {
+        return f.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<Long, UUID> only(Map<Long, UUID> users, UUID keycloakId) {
+        Map<Long, UUID> one = new HashMap<>();
+        users.forEach((id, kcId) -> {
+            if (kcId.equals(keycloakId)) one.put(id, kcId);
+        });
+        return one;
+    }
+
+    private static List<Map.Entry<UUID, Long>> concat(Map<UUID, Long> a, Map<UUID, Long> b) {
+        List<Map.Entry<UUID, Long>> all = new ArrayList<>(a.entrySet());
+        all.addAll(b.entrySet());
+        return all;
+    }
+
+    // First 64 bits of md5 over the normalized fields, exactly as UserRepository.findSyncDigestsByKeycloakIdIn
+    // builds it in SQL; only equality matters, so collisions just mean a missed drift until the fields change again
+    private static long digest(String email, String firstName, String lastName, boolean enabled, boolean admin) {
+        String canonical = normalizeEmail(email) + '\u001f' + blank(firstName) + '\u001f' + blank(lastName)
+                + '\u001f' + enabled + '\u001f' + admin;
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(md5).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    private static String normalizeEmail(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String blank(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,112 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.dto.UserChangedEvent;
+import com.gigtasker.userservice.enums.UserChangeType;
+import com.gigtasker.userservice.repository.UserRepository;
+import com.gigtasker.userservice.repository.UserRepository.UserKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves soft-deleted users past the retention age out of {@code users} into {@code users_archive},
+ * then removes them from Keycloak. Each chunk is its own transaction so a long backlog never holds
+ * one huge lock, and Keycloak is only touched after the DB side committed.
+ */
+@Slf4j
+@Service
+public class UserRetentionService {
+
+    private final UserRepository userRepository;
+    private final KeycloakService keycloakService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserAuditTrail auditTrail;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.retention.max-age:90d}")
+    private Duration maxAge;
+
+    @Value("${app.retention.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.retention.max-chunks-per-run:200}")
+    private int maxChunksPerRun;
+
+    public UserRetentionService(UserRepository userRepository, KeycloakService keycloakService,
+                                ApplicationEventPublisher eventPublisher, UserAuditTrail auditTrail,
+                                PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.keycloakService = keycloakService;
+        this.eventPublisher = eventPublisher;
+        this.auditTrail = auditTrail;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private record PurgedChunk(List<Long> ids, List<UUID> keycloakIds) {}
+
+    @Scheduled(cron = "${app.retention.cron:0 30 3 * * *}")
+    public void purgeExpiredUsers() {
+        if (!enabled) {
+            return;
+        }
+
+        Instant cutoff = Instant.now().minus(maxAge);
+        log.info("🧹 Starting retention purge for users deleted before {}", cutoff);
+
+        transactionTemplate.executeWithoutResult(status -> userRepository.stampMissingDeletedAt());
+
+        int purged = 0;
+        int keycloakFailures = 0;
+
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            PurgedChunk result = transactionTemplate.execute(status -> archiveChunk(cutoff));
+            if (result == null || result.ids().isEmpty()) {
+                break;
+            }
+
+            Map<UUID, String> failures = keycloakService.applyToUsers(result.keycloakIds(), keycloakService::removeUser);
+            if (!failures.isEmpty()) {
+                // Rows are already archived with their keycloak_id, so these can be cleaned up by hand
+                log.warn("Failed to remove {} archived user(s) from Keycloak: {}", failures.size(), failures.keySet());
+            }
+
+            purged += result.ids().size();
+            keycloakFailures += failures.size();
+        }
+
+        log.info("✅ Retention purge archived {} user(s), {} Keycloak removal failure(s)", purged, keycloakFailures);
+    }
+
+    private PurgedChunk archiveChunk(Instant cutoff) {
+        List<Long> ids = userRepository.findPurgeableIds(cutoff, chunkSize);
+        if (ids.isEmpty()) {
+            return new PurgedChunk(List.of(), List.of());
+        }
+
+        List<UserKeys> keys = userRepository.findAllKeysByIdIn(ids);
+        userRepository.archiveByIdIn(ids);
+        userRepository.removeAllRolesByIdIn(ids);
+        userRepository.hardDeleteByIdIn(ids);
+
+        keys.forEach(k -> {
+            eventPublisher.publishEvent(UserChangedEvent.of(UserChangeType.PURGED, k.getId(), k.getKeycloakId()));
+            auditTrail.record(UserChangeType.PURGED, k.getId(), k.getKeycloakId(), Map.of("reason", "retention"));
+        });
+        List<UUID> keycloakIds = keys.stream().map(UserKeys::getKeycloakId).toList();
+
+        return new PurgedChunk(ids, keycloakIds);
+    }
+}
@@ -1,32 +1,39 @@
 package com.gigtasker.userservice.service;
 
 import com.gigtasker.common.dto.UserDTO;
+import com.gigtasker.userservice.dto.CountryDTO;
+import com.gigtasker.userservice.dto.GenderDTO;
+import com.gigtasker.userservice.dto.UserChangedEvent;
 import com.gigtasker.userservice.dto.UserUpdateDTO;
 import com.gigtasker.userservice.entity.Country;
 import com.gigtasker.userservice.entity.Gender;
 import com.gigtasker.userservice.entity.Role;
 import com.gigtasker.userservice.entity.User;
 import com.gigtasker.userservice.enums.RoleType;
+import com.gigtasker.userservice.enums.UserChangeType;
+import com.gigtasker.userservice.enums.UserField;
 import com.gigtasker.userservice.exceptions.KeycloakException;
 import com.gigtasker.userservice.exceptions.ResourceNotFoundException;
 import com.gigtasker.userservice.mapper.UserMapper;
-import com.gigtasker.userservice.repository.CountryRepository;
-import com.gigtasker.userservice.repository.GenderRepository;
+import com.gigtasker.userservice.repository.UserFieldsetRepository;
 import com.gigtasker.userservice.repository.UserRepository;
+import jakarta.persistence.EntityManager;
 import jakarta.ws.rs.NotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.keycloak.admin.client.Keycloak;
-import org.keycloak.admin.client.resource.UserResource;
-import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -37,10 +44,15 @@ public class UserService {
     private final Keycloak keycloakBot;
     private final RoleService roleService;
     private final StorageService storageService;
-    private final CountryRepository countryRepository;
-    private final GenderRepository genderRepository;
+    private final ReferenceIndex referenceIndex;
     private final KeycloakService keycloakService;
     private final UserMapper userMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserFieldsetRepository userFieldsetRepository;
+    private final UserAuditTrail auditTrail;
+    private final TransactionTemplate transactionTemplate;
+    private final AvatarCache avatarCache;
+    private final EntityManager entityManager;
 
     private static final String GIGTASKER = "gigtasker";
 
@@ -49,15 +61,23 @@ public class UserService {
 
     public UserService(UserRepository userRepository, StorageService storageService, KeycloakService keycloakService,
                        @Qualifier("keycloakBot") Keycloak keycloakBot, RoleService roleService, UserMapper userMapper,
-                       CountryRepository countryRepository, GenderRepository genderRepository) {
+                       ReferenceIndex referenceIndex,
+                       ApplicationEventPublisher eventPublisher, UserFieldsetRepository userFieldsetRepository,
+                       UserAuditTrail auditTrail, PlatformTransactionManager transactionManager,
+                       AvatarCache avatarCache, EntityManager entityManager) {
         this.userRepository = userRepository;
         this.keycloakBot = keycloakBot;
         this.roleService = roleService;
         this.storageService = storageService;
-        this.countryRepository = countryRepository;
-        this.genderRepository = genderRepository;
+        this.referenceIndex = referenceIndex;
         this.keycloakService = keycloakService;
         this.userMapper = userMapper;
+        this.eventPublisher = eventPublisher;
+        this.userFieldsetRepository = userFieldsetRepository;
+        this.auditTrail = auditTrail;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.avatarCache = avatarCache;
+        this.entityManager = entityManager;
     }
 
     private static final String USER_NOT_FOUND = "User not found";
@@ -70,6 +90,8 @@ public class UserService {
         // DTO's are used to explicitly hide the actual Entity from being exposed
         User user = User.builder().username(userDTO.username()).email(userDTO.email()).build();
         User savedUser = userRepository.save(user);
+        publish(UserChangeType.CREATED, savedUser);
+        auditTrail.record(UserChangeType.CREATED, savedUser.getId(), savedUser.getKeycloakId(), null);
         return userMapper.toDTO(savedUser);
     }
 
@@ -78,18 +100,47 @@ public class UserService {
         return userRepository.findByIdWithRoles(id).map(userMapper::toDTO).orElse(null);
     }
 
+    // Sparse variant of getUserById: only the requested columns, only the joins they need
+    @Transactional(readOnly = true)
+    public Map<String, Object> getUserFieldsById(Long id, Set<UserField> fields) {
+        List<Map<String, Object>> result = userFieldsetRepository.findByIds(List.of(id), fields);
+        return result.isEmpty() ? null : result.getFirst();
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> findUserFieldsByIds(List<Long> ids, Set<UserField> fields) {
+        return userFieldsetRepository.findByIds(ids, fields);
+    }
+
     @Transactional(readOnly = true)
     public UserDTO getUserByEmail(String email) {
         return userRepository.findByEmail(email).map(userMapper::toDTO).orElse(null);
     }
 
+    // /me read path: one covered-index lookup plus the roles, names resolved from the reference index
+    @Transactional(readOnly = true)
+    public UserDTO getProfileByKeycloakId(UUID keycloakId) {
+        return userRepository.findProfileRowByKeycloakId(keycloakId)
+                .map(row -> {
+                    GenderDTO gender = referenceIndex.findGenderById(row.getGenderId());
+                    CountryDTO country = referenceIndex.findCountryById(row.getCountryId());
+                    List<String> roles = userRepository.findRoleNamesByUserId(row.getId()).stream()
+                            .map(RoleType::name)
+                            .toList();
+                    return userMapper.toDTO(row, gender != null ? gender.description() : null,
+                            country != null ? country.name() : null, roles);
+                })
+                .orElse(null);
+    }
+
+    // Resolves the caller by the immutable "sub" claim and brings their DB roles in line with the token
     @Transactional
     public UserDTO getMe() {
         Jwt jwt = (Jwt) Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication()).getPrincipal();
         assert jwt != null;
-        String email = jwt.getClaimAsString("email");
+        UUID keycloakId = UUID.fromString(jwt.getSubject());
 
-        User user = userRepository.findByEmail(email)
+        User user = userRepository.findByKeycloakId(keycloakId)
                 .orElseThrow(() -> new ResourceNotFoundException("User profile not found. Please register via the app."));
 
         List<String> rolesFromToken = extractRolesFromToken(jwt);
@@ -99,16 +150,36 @@ public class UserService {
         Set<RoleType> newRoleNames = syncedRoles.stream().map(Role::getName).collect(Collectors.toSet());
 
         if (!currentRoleNames.equals(newRoleNames)) {
-            log.info("Syncing roles for user {}", email);
+            log.info("Syncing roles for user {}", user.getEmail());
             user.setRoles(syncedRoles);
             user = userRepository.save(user);
+            publish(UserChangeType.ROLES_CHANGED, user);
+            auditTrail.record(UserChangeType.ROLES_CHANGED, user.getId(), user.getKeycloakId(),
+                    Map.of("source", "token", "from", sorted(currentRoleNames), "to", sorted(newRoleNames)));
         }
 
         return userMapper.toDTO(user);
     }
 
+    /**
+     * The roles {@link #getMe} would sync from this token, as names: the known ones, or ROLE_USER if none.
+     * Lets a cached /me response be checked against the token without touching the database.
+     */
+    public static Set<String> tokenRoleNames(Jwt jwt) {
+        Set<String> roles = new HashSet<>();
+        for (String name : extractRolesFromToken(jwt)) {
+            try {
+                roles.add(RoleType.valueOf(name).name());
+            } catch (IllegalArgumentException ignored) {
+                // e.g. "offline_access", not ours
+            }
+        }
+        if (roles.isEmpty()) roles.add(RoleType.ROLE_USER.name());
+        return roles;
+    }
+
     @SuppressWarnings("unchecked")
-    private List<String> extractRolesFromToken(Jwt jwt) {
+    private static List<String> extractRolesFromToken(Jwt jwt) {
         Map<String, Object> realmAccess = jwt.getClaim("realm_access");
         if (realmAccess == null) return new ArrayList<>();
         return (List<String>) realmAccess.getOrDefault("roles", new ArrayList<>());
@@ -127,13 +198,8 @@ public class UserService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException(USER_NOT_FOUND));
 
-        String keycloakUserId = keycloakService.findUserIdByEmail(user.getEmail());
-        if (keycloakUserId == null) {
-            throw new ResourceNotFoundException("User missing in Keycloak");
-        }
-
-        // assign group
-        keycloakService.addUserToGroup(UUID.fromString(keycloakUserId), "GIGTASKER_ADMIN_USERS");
+        // assign group (keycloakId is stored on the user, no need to search Keycloak by email)
+        keycloakService.addUserToGroup(user.getKeycloakId(), "GIGTASKER_ADMIN_USERS");
 
         // add ROLE_ADMIN locally
         Role adminRole = roleService.findRoleByName(RoleType.ROLE_ADMIN)
@@ -141,6 +207,9 @@ public class UserService {
 
         user.getRoles().add(adminRole);
         userRepository.save(user);
+        publish(UserChangeType.ROLES_CHANGED, user);
+        auditTrail.record(UserChangeType.ROLES_CHANGED, user.getId(), user.getKeycloakId(),
+                Map.of("added", RoleType.ROLE_ADMIN.name()));
 
         log.info("Promoted {} to ADMIN", user.getEmail());
     }
@@ -159,17 +228,14 @@ public class UserService {
             throw e;
         }
 
+        publish(UserChangeType.DELETED, user);
+        auditTrail.record(UserChangeType.DELETED, user.getId(), user.getKeycloakId(), Map.of("enabled", false));
         log.info("User {} soft-deleted (Disabled in Keycloak, IsDeleted=true in DB)", user.getEmail());
     }
 
     private void updateKeycloakStatus(UUID keycloakId, boolean enabled) {
         try {
-            UserResource userResource = keycloakBot.realm(GIGTASKER).users().get(keycloakId.toString());
-
-            UserRepresentation representation = userResource.toRepresentation();
-            representation.setEnabled(enabled);
-
-            userResource.update(representation);
+            keycloakService.setUserEnabled(keycloakId, enabled);
         } catch (Exception e) {
             log.error("Failed to update Keycloak status", e);
             throw new KeycloakException("External Identity Error");
@@ -189,6 +255,8 @@ public class UserService {
 
         userRepository.removeAllRoles(userId);
         userRepository.hardDeleteById(userId);
+        publish(UserChangeType.PURGED, user);
+        auditTrail.record(UserChangeType.PURGED, user.getId(), user.getKeycloakId(), null);
 
         log.info("User {} PERMANENTLY deleted.", user.getEmail());
     }
@@ -200,7 +268,7 @@ public class UserService {
 
     @Transactional
     public UserDTO updateUser(UUID keycloakId, UserUpdateDTO updates) {
-        User user = userRepository.findByKeycloakId(keycloakId)
+        User user = userRepository.findForUpdateByKeycloakId(keycloakId)
                 .orElseThrow(() -> new ResourceNotFoundException(USER_NOT_FOUND));
 
         return performUpdate(user, updates);
@@ -212,35 +280,67 @@ public class UserService {
         if (updates.lastName() != null) user.setLastName(updates.lastName());
         if (updates.dateOfBirth() != null) user.setDateOfBirth(updates.dateOfBirth());
 
-        // Handle Foreign Keys
+        // Handle Foreign Keys: validated against the reference index, attached as proxies without a SELECT
+        GenderDTO gender = user.getGender() == null ? null : referenceIndex.findGenderById(user.getGender().getId());
         if (updates.genderId() != null) {
-            Gender gender = genderRepository.findById(updates.genderId())
-                    .orElseThrow(() -> new RuntimeException("Invalid Gender ID"));
-            user.setGender(gender);
+            gender = referenceIndex.findGenderById(updates.genderId());
+            if (gender == null) throw new RuntimeException("Invalid Gender ID");
+            user.setGender(entityManager.getReference(Gender.class, gender.id()));
         }
 
+        CountryDTO country = user.getCountry() == null ? null : referenceIndex.findCountryById(user.getCountry().getId());
         if (updates.countryId() != null) {
-            Country country = countryRepository.findById(updates.countryId())
-                    .orElseThrow(() -> new RuntimeException("Invalid Country ID"));
-            user.setCountry(country);
+            country = referenceIndex.findCountryById(updates.countryId());
+            if (country == null) throw new RuntimeException("Invalid Country ID");
+            user.setCountry(entityManager.getReference(Country.class, country.id()));
         }
 
-        User savedUser = userRepository.save(user);
+        // The user is managed: dirty checking flushes one UPDATE with only the changed columns (@DynamicUpdate)
+        publish(UserChangeType.UPDATED, user);
+        auditTrail.record(UserChangeType.UPDATED, user.getId(), user.getKeycloakId(), UserAuditTrail.profileChanges(updates));
         log.info("Updated profile for user: {}", user.getEmail());
-        return userMapper.toDTO(savedUser);
+        // Names from the index too, so the proxies are never initialized
+        return userMapper.toDTO(user, gender == null ? null : gender.description(), country == null ? null : country.name());
     }
 
-    @Transactional
-    public UserDTO updateProfileImage(UUID keycloakId, MultipartFile file) {
-        User user = userRepository.findByKeycloakId(keycloakId)
-                .orElseThrow(() -> new ResourceNotFoundException(USER_NOT_FOUND));
+    /**
+     * Uploads without holding a transaction (or a connection) open; the URL update gets its own short
+     * transaction once the object is stored.
+     */
+    public CompletableFuture<UserDTO> updateProfileImage(UUID keycloakId, MultipartFile file) {
+        if (userRepository.findByKeycloakId(keycloakId).isEmpty()) {
+            throw new ResourceNotFoundException(USER_NOT_FOUND);
+        }
 
-        // Upload to MinIO -> Returns key (e.g., "avatars/uuid.jpg")
-        String imageKey = storageService.uploadProfileImage(keycloakId, file);
+        // Upload to MinIO -> content-addressed key (e.g., "avatars/<sha256>.jpg"), then point the user at it
+        return storageService.uploadProfileImageAsync(keycloakId, file, imageKey -> {
+            String[] previousKey = new String[1];
+            UserDTO updated = transactionTemplate.execute(status -> {
+                User user = userRepository.findByKeycloakId(keycloakId)
+                        .orElseThrow(() -> new ResourceNotFoundException(USER_NOT_FOUND));
+                previousKey[0] = user.getProfileImageUrl();
+                // avatar_objects reference counts follow via trigger
+                user.setProfileImageUrl(imageKey);
+                publish(UserChangeType.AVATAR_CHANGED, user);
+                return userMapper.toDTO(user);
+            });
+            // New content means a new key; the old object may now be orphaned, don't keep serving it locally
+            if (previousKey[0] != null && !previousKey[0].equals(imageKey)) avatarCache.evict(previousKey[0]);
+            return updated;
+        });
+    }
 
-        // Update DB
-        user.setProfileImageUrl(imageKey);
+    @Transactional(readOnly = true)
+    public Optional<String> getProfileImageKey(UUID keycloakId) {
+        return userRepository.findProfileImageKeyByKeycloakId(keycloakId);
+    }
+
+    private static List<String> sorted(Set<RoleType> roles) {
+        return roles.stream().map(RoleType::name).sorted().toList();
+    }
 
-        return userMapper.toDTO(userRepository.save(user));
+    // Delivered to the change stream after commit (see UserEventPublisher)
+    private void publish(UserChangeType type, User user) {
+        eventPublisher.publishEvent(UserChangedEvent.of(type, user.getId(), user.getKeycloakId()));
     }
 }
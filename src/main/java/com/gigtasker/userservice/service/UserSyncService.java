@@ -10,6 +10,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,13 +20,16 @@ import java.util.Set;
 import java.util.UUID;
 
 // Dormant Code Previously Used When We Created Users Directly on Keycloak and Synced to our DB's
+// Kept dormant now that scheduling is enabled: opt in with app.keycloak-sync.enabled=true
 
 @Service
+@ConditionalOnProperty(name = "app.keycloak-sync.enabled", havingValue = "true")
 @Slf4j
 @RequiredArgsConstructor
 public class UserSyncService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
+    private final UserIdentityIndex userIdentityIndex;
 
     @Qualifier("keycloakBot")
     private final Keycloak keycloakBot;
@@ -74,6 +78,7 @@ public class UserSyncService {
                 .build();
 
         userRepository.save(newUser);
+        userIdentityIndex.record(newUser.getUsername(), newUser.getEmail());
         log.debug("Imported user: {}", kcUser.getEmail());
     }
 }
@@ -0,0 +1,65 @@
+package com.gigtasker.userservice.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch over {@code long} keys: approximate per-key counts in fixed memory. Estimates never
+ * undercount; they overcount by at most about {@code e / width} of the total with high probability.
+ * Counters are atomic, so concurrent {@link #add} calls never lose increments and never allocate.
+ */
+public final class CountMinSketch {
+
+    private final AtomicLongArray counters;
+    private final int depth;
+    private final int widthMask;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     * @param depth number of rows (independent hashes)
+     */
+    public CountMinSketch(int width, int depth) {
+        int w = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.counters = new AtomicLongArray(w * depth);
+        this.depth = depth;
+        this.widthMask = w - 1;
+    }
+
+    // Increments the key and returns its new estimate
+    public long add(long key) {
+        long h1 = fmix64(key);
+        long h2 = fmix64(key ^ 0x9E3779B97F4A7C15L) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * (widthMask + 1) + (int) ((h1 + row * h2) & widthMask);
+            min = Math.min(min, counters.incrementAndGet(index));
+        }
+        return min;
+    }
+
+    public long estimate(long key) {
+        long h1 = fmix64(key);
+        long h2 = fmix64(key ^ 0x9E3779B97F4A7C15L) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * (widthMask + 1) + (int) ((h1 + row * h2) & widthMask);
+            min = Math.min(min, counters.get(index));
+        }
+        return min;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    // MurmurHash3 finalizer
+    static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
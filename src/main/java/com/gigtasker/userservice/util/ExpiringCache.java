@@ -0,0 +1,76 @@
+package com.gigtasker.userservice.util;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Small bounded map whose entries expire after a fixed TTL.
+ * <p>
+ * Loaders take a {@link #stamp()} before reading the source and pass it to {@link #put}; if anything was
+ * invalidated in between, the value may already be stale and is not stored. When full, expired entries are
+ * swept; if that frees nothing, new values simply aren't cached.
+ */
+public final class ExpiringCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAt) {}
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public ExpiringCache(Duration ttl, int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.expiresAt() < 0) return entry.value();
+        entries.remove(key, entry);
+        return null;
+    }
+
+    public long stamp() {
+        return generation.get();
+    }
+
+    public void put(K key, V value, long stamp) {
+        if (ttlNanos <= 0) return;
+        if (entries.size() >= maxEntries && !sweep()) return;
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        // Invalidated while the caller was loading: the value may already be stale
+        if (generation.get() != stamp) {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidate(K key) {
+        generation.incrementAndGet();
+        entries.remove(key);
+    }
+
+    public void invalidateIf(Predicate<V> predicate) {
+        generation.incrementAndGet();
+        entries.values().removeIf(entry -> predicate.test(entry.value()));
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean sweep() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> now - entry.expiresAt() >= 0);
+        return entries.size() < maxEntries;
+    }
+}
@@ -0,0 +1,96 @@
+package com.gigtasker.userservice.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer / single-consumer ring buffer (Vyukov-style per-slot sequence numbers).
+ * <p>
+ * Producers claim a slot with one CAS on the tail and never block: {@link #offer} returns {@code false} when the
+ * buffer is full, so the caller decides what to do about it (count a drop, shed load). Only one thread may call
+ * {@link #poll} / {@link #drainTo}.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    // sequences[i] == position  -> slot free for the producer claiming 'position'
+    // sequences[i] == position+1 -> slot holds the element written at 'position'
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public MpscRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.setRelease(i, i);
+        }
+    }
+
+    public boolean offer(E element) {
+        if (element == null) throw new NullPointerException();
+
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long diff = sequences.getAcquire(index) - position;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.setPlain(index, element);
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // The consumer hasn't freed this slot yet: full
+                return false;
+            }
+            // diff > 0: another producer took this position, reload tail and retry
+            Thread.onSpinWait();
+        }
+    }
+
+    // Consumer only
+    public E poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.getAcquire(index) != position + 1) {
+            return null;
+        }
+        E element = elements.getPlain(index);
+        elements.setPlain(index, null);
+        sequences.setRelease(index, position + capacity);
+        head = position + 1;
+        return element;
+    }
+
+    // Consumer only
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    // Approximate under concurrency, good enough for a gauge
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.clamp(size, 0, capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
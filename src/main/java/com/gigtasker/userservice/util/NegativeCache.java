@@ -0,0 +1,40 @@
+package com.gigtasker.userservice.util;
+
+import java.time.Duration;
+
+/**
+ * Remembers, for a short time, keys that were looked up and not found. Same stamp protocol as
+ * {@link ExpiringCache}: a miss that raced with an invalidation is not recorded.
+ */
+public final class NegativeCache<K> {
+
+    private final ExpiringCache<K, Boolean> missing;
+
+    public NegativeCache(Duration ttl, int maxEntries) {
+        this.missing = new ExpiringCache<>(ttl, maxEntries);
+    }
+
+    public boolean contains(K key) {
+        return missing.get(key) != null;
+    }
+
+    public long stamp() {
+        return missing.stamp();
+    }
+
+    public void add(K key, long stamp) {
+        missing.put(key, Boolean.TRUE, stamp);
+    }
+
+    public void invalidate(K key) {
+        missing.invalidate(key);
+    }
+
+    public void clear() {
+        missing.clear();
+    }
+
+    public int size() {
+        return missing.size();
+    }
+}
@@ -0,0 +1,93 @@
+package com.gigtasker.userservice.util;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses concurrent calls for the same key into one execution of the loader; everyone else waits for
+ * and shares its result. With a non-zero {@code retain} a successful result keeps being handed out for that
+ * long after it completed, then it is dropped. Failures (including errors) are never retained, the next caller
+ * tries again.
+ */
+public class SingleFlight<K, V> {
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        boolean isExpired(long now, long retainNanos) {
+            return future.isDone() && now - completedAt >= retainNanos;
+        }
+    }
+
+    private final Map<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final long retainNanos;
+    private final Executor evictor;
+    private final Runnable onShared;
+
+    /**
+     * @param retain   how long a successful result is reused, {@link Duration#ZERO} for in-flight only
+     * @param onShared called every time a caller gets someone else's result (for metrics)
+     */
+    public SingleFlight(Duration retain, Runnable onShared) {
+        this.retainNanos = retain.toNanos();
+        this.evictor = retainNanos > 0 ? CompletableFuture.delayedExecutor(retainNanos, TimeUnit.NANOSECONDS) : null;
+        this.onShared = onShared;
+    }
+
+    public V execute(K key, Callable<V> loader) throws Exception {
+        Flight<V> mine = new Flight<>();
+        Flight<V> existing = flights.putIfAbsent(key, mine);
+
+        // An eviction may not have run yet
+        while (existing != null && existing.isExpired(System.nanoTime(), retainNanos)) {
+            flights.remove(key, existing);
+            existing = flights.putIfAbsent(key, mine);
+        }
+
+        if (existing != null) {
+            onShared.run();
+            return await(existing);
+        }
+
+        V value;
+        try {
+            value = loader.call();
+        } catch (Throwable t) {
+            // Whatever happened, waiters must be released and the key freed
+            flights.remove(key, mine);
+            mine.future.completeExceptionally(t);
+            throw t;
+        }
+
+        mine.completedAt = System.nanoTime();
+        mine.future.complete(value);
+        if (evictor == null) {
+            flights.remove(key, mine);
+        } else {
+            // Retained results (e.g. tokens) must not outlive the window just because nobody asked again
+            evictor.execute(() -> flights.remove(key, mine));
+        }
+        return value;
+    }
+
+    int size() {
+        return flights.size();
+    }
+
+    private V await(Flight<V> flight) throws Exception {
+        try {
+            return flight.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+    }
+}
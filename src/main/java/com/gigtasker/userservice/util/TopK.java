@@ -0,0 +1,75 @@
+package com.gigtasker.userservice.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The {@code k} keys with the highest counts seen so far, fed with running estimates (e.g. from a
+ * {@link CountMinSketch}). {@link #offer} rejects most calls with two volatile reads (size and current minimum);
+ * only keys that would make it into the table take the lock, and nothing on that path allocates.
+ */
+public final class TopK {
+
+    public record Entry(long key, long count) {}
+
+    private final long[] keys;
+    private final long[] counts;
+    // Written under the lock, read without it by the fast path in offer
+    private volatile int size;
+    private volatile long minCount;
+
+    public TopK(int k) {
+        this.keys = new long[k];
+        this.counts = new long[k];
+    }
+
+    public void offer(long key, long count) {
+        if (size == keys.length && count <= minCount) {
+            return;
+        }
+        synchronized (this) {
+            int slot = indexOf(key);
+            if (slot < 0) {
+                if (size < keys.length) {
+                    slot = size++;
+                } else {
+                    slot = indexOfMin();
+                    if (count <= counts[slot]) return;
+                }
+                keys[slot] = key;
+            }
+            counts[slot] = Math.max(counts[slot], count);
+            minCount = size == keys.length ? counts[indexOfMin()] : 0;
+        }
+    }
+
+    public synchronized List<Entry> snapshot() {
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(keys[i], counts[i]));
+        }
+        entries.sort(Comparator.comparingLong(Entry::count).reversed());
+        return entries;
+    }
+
+    public synchronized void reset() {
+        size = 0;
+        minCount = 0;
+    }
+
+    private int indexOf(long key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    private int indexOfMin() {
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] < counts[min]) min = i;
+        }
+        return min;
+    }
+}
@@ -0,0 +1,99 @@
+package com.gigtasker.userservice.benchmark;
+
+import com.gigtasker.common.dto.UserDTO;
+import com.gigtasker.userservice.entity.Country;
+import com.gigtasker.userservice.entity.Gender;
+import com.gigtasker.userservice.entity.Role;
+import com.gigtasker.userservice.entity.User;
+import com.gigtasker.userservice.enums.GenderType;
+import com.gigtasker.userservice.enums.RoleType;
+import com.gigtasker.userservice.mapper.UserMapper;
+import com.gigtasker.userservice.mapper.UserMapperImpl;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares JSON and CBOR for /users/batch sized payloads: encode + decode CPU time and bytes on the wire,
+ * raw and gzipped. Not a unit test, run it by hand:
+ * <pre>
+ *   ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.gigtasker.userservice.benchmark.UserPayloadBenchmark
+ * </pre>
+ */
+public class UserPayloadBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 5_000;
+
+    public static void main(String[] args) throws IOException {
+        UserMapper mapper = new UserMapperImpl();
+        ObjectMapper json = JsonMapper.builder().build();
+        ObjectMapper cbor = CBORMapper.builder().build();
+
+        System.out.printf("%-6s %-5s %10s %10s %12s %12s%n", "users", "fmt", "bytes", "gzip", "encode(us)", "decode(us)");
+        for (int size : new int[]{10, 100, 1000}) {
+            List<UserDTO> batch = LongStream.rangeClosed(1, size).mapToObj(id -> mapper.toDTO(user(id))).toList();
+            report(size, "json", json, batch);
+            report(size, "cbor", cbor, batch);
+        }
+    }
+
+    private static void report(int size, String format, ObjectMapper objectMapper, List<UserDTO> batch)
+            throws IOException {
+        byte[] encoded = objectMapper.writeValueAsBytes(batch);
+        int rounds = Math.max(10, MEASURED_ROUNDS / size);
+
+        for (int i = 0; i < WARMUP_ROUNDS / Math.max(1, size / 10); i++) {
+            objectMapper.readValue(objectMapper.writeValueAsBytes(batch), UserDTO[].class);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            objectMapper.writeValueAsBytes(batch);
+        }
+        double encodeMicros = (System.nanoTime() - start) / 1_000.0 / rounds;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            objectMapper.readValue(encoded, UserDTO[].class);
+        }
+        double decodeMicros = (System.nanoTime() - start) / 1_000.0 / rounds;
+
+        System.out.printf("%-6d %-5s %10d %10d %12.1f %12.1f%n",
+                size, format, encoded.length, gzip(encoded).length, encodeMicros, decodeMicros);
+    }
+
+    private static User user(long id) {
+        return User.builder()
+                .id(id)
+                .keycloakId(UUID.randomUUID())
+                .username("user_" + id)
+                .email("user_" + id + "@yopmail.com")
+                .firstName("First" + id)
+                .lastName("Last" + id)
+                .dateOfBirth(LocalDate.of(1990, 1, 1).plusDays(id))
+                .gender(Gender.builder().id(1L).name(GenderType.WOMAN).description("Woman").build())
+                .country(Country.builder().id(1L).name("United Kingdom").isoCode("GB").build())
+                .roles(Set.of(Role.builder().id(1L).name(RoleType.ROLE_USER).build()))
+                .profileImageUrl("avatars/" + id + ".jpg")
+                .build();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
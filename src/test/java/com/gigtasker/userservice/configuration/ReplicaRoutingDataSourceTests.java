@@ -0,0 +1,136 @@
+package com.gigtasker.userservice.configuration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTests {
+
+	private final DataSource primary = mock(DataSource.class);
+	private final DataSource replica0 = mock(DataSource.class);
+	private final DataSource replica1 = mock(DataSource.class);
+	private final Connection primaryConnection = mock(Connection.class);
+
+	private ReplicaRoutingDataSource routing;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		when(replica0.getConnection()).thenReturn(mock(Connection.class));
+		when(replica1.getConnection()).thenReturn(mock(Connection.class));
+
+		routing = new ReplicaRoutingDataSource(2, new ReplicaLagGuard(Duration.ofMinutes(1)));
+		routing.setTargetDataSources(Map.of(
+				ReplicaRoutingDataSource.PRIMARY, primary,
+				ReplicaRoutingDataSource.REPLICA_PREFIX + 0, replica0,
+				ReplicaRoutingDataSource.REPLICA_PREFIX + 1, replica1));
+		routing.setDefaultTargetDataSource(primary);
+		routing.afterPropertiesSet();
+
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		TransactionSynchronizationManager.clear();
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void readOnlyTransactionsRoundRobinAcrossReplicas() throws SQLException {
+		readOnly(true);
+
+		routing.getConnection();
+		routing.getConnection();
+		routing.getConnection();
+
+		verify(replica0, times(2)).getConnection();
+		verify(replica1).getConnection();
+	}
+
+	@Test
+	void writeTransactionsGoToThePrimary() throws SQLException {
+		readOnly(false);
+
+		routing.getConnection();
+
+		verify(primary).getConnection();
+	}
+
+	@Test
+	void writeStatementPinsTheCallerToThePrimary() throws SQLException {
+		authenticateAs("alice");
+		readOnly(false);
+		routing.getConnection().prepareStatement("update users set first_name = ? where id = ?");
+		verify(primaryConnection).prepareStatement("update users set first_name = ? where id = ?");
+
+		readOnly(true);
+		routing.getConnection();
+
+		verify(primary, times(2)).getConnection();
+		assertThat(mockingDetails(replica0).getInvocations()).isEmpty();
+	}
+
+	@Test
+	void transactionThatOnlySelectsDoesNotPin() throws SQLException {
+		authenticateAs("alice");
+		readOnly(false);
+		routing.getConnection().prepareStatement("  SELECT * FROM users WHERE id = ?");
+
+		readOnly(true);
+		routing.getConnection();
+
+		verify(replica0).getConnection();
+	}
+
+	@Test
+	void pinIsPerCaller() throws SQLException {
+		authenticateAs("alice");
+		readOnly(false);
+		routing.getConnection().prepareStatement("insert into users (username) values (?)");
+
+		authenticateAs("bob");
+		readOnly(true);
+		routing.getConnection();
+
+		verify(replica0).getConnection();
+	}
+
+	@Test
+	void anonymousWritesAreNotPinned() throws SQLException {
+		readOnly(false);
+		Connection connection = routing.getConnection();
+		connection.prepareStatement("insert into users (username) values (?)");
+
+		assertThat(connection).isSameAs(primaryConnection);
+		readOnly(true);
+		routing.getConnection();
+		verify(replica0).getConnection();
+	}
+
+	private static void readOnly(boolean readOnly) {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+	}
+
+	private static void authenticateAs(String subject) {
+		Jwt jwt = Jwt.withTokenValue("token").header("alg", "none").subject(subject).build();
+		SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(jwt, null));
+	}
+}
@@ -0,0 +1,150 @@
+package com.gigtasker.userservice.controller;
+
+import com.gigtasker.userservice.service.AvatarCache;
+import com.gigtasker.userservice.service.AvatarCache.CachedAvatar;
+import com.gigtasker.userservice.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AvatarControllerTests {
+
+	private static final String CONTENT = "0123456789";
+	private static final String KEY = "avatars/abc.png";
+
+	private final UserService userService = mock(UserService.class);
+	private final AvatarCache avatarCache = mock(AvatarCache.class);
+	private final AvatarController controller = new AvatarController(userService, avatarCache);
+	private final UUID userId = UUID.randomUUID();
+
+	@TempDir
+	Path directory;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		Path file = Files.writeString(directory.resolve("abc.png"), CONTENT, StandardCharsets.US_ASCII);
+		when(userService.getProfileImageKey(userId)).thenReturn(Optional.of(KEY));
+		when(avatarCache.get(KEY)).thenReturn(new CachedAvatar(KEY, file, CONTENT.length(), "etag-1", "image/png",
+				System.nanoTime()));
+	}
+
+	@Test
+	void parseRangeHandlesClosedOpenEndedAndSuffixRanges() {
+		assertThat(AvatarController.parseRange("bytes=2-5", 10)).containsExactly(2, 5);
+		assertThat(AvatarController.parseRange("bytes=4-", 10)).containsExactly(4, 9);
+		assertThat(AvatarController.parseRange("bytes=-3", 10)).containsExactly(7, 9);
+		// Larger than the object: clamped, not rejected
+		assertThat(AvatarController.parseRange("bytes=-30", 10)).containsExactly(0, 9);
+		assertThat(AvatarController.parseRange("bytes=8-100", 10)).containsExactly(8, 9);
+	}
+
+	@Test
+	void parseRangeRejectsUnsatisfiableRanges() {
+		assertThat(AvatarController.parseRange("bytes=10-", 10)).isNull();
+		assertThat(AvatarController.parseRange("bytes=6-2", 10)).isNull();
+		assertThat(AvatarController.parseRange("bytes=-0", 10)).isNull();
+	}
+
+	@Test
+	void parseRangeIgnoresMultipleRangesAndUnknownUnits() {
+		assertThat(AvatarController.parseRange("bytes=0-1,4-5", 10)).isEmpty();
+		assertThat(AvatarController.parseRange("items=0-1", 10)).isEmpty();
+		assertThat(AvatarController.parseRange("bytes=abc", 10)).isEmpty();
+		assertThat(AvatarController.parseRange("bytes=x-2", 10)).isEmpty();
+	}
+
+	@Test
+	void matchesAcceptsListsWeakTagsAndWildcard() {
+		assertThat(AvatarController.matches("\"etag-1\"", "\"etag-1\"")).isTrue();
+		assertThat(AvatarController.matches("\"other\", \"etag-1\"", "\"etag-1\"")).isTrue();
+		assertThat(AvatarController.matches("W/\"etag-1\"", "\"etag-1\"")).isTrue();
+		assertThat(AvatarController.matches("*", "\"etag-1\"")).isTrue();
+		assertThat(AvatarController.matches("\"other\"", "\"etag-1\"")).isFalse();
+		assertThat(AvatarController.matches(null, "\"etag-1\"")).isFalse();
+	}
+
+	@Test
+	void servesTheWholeAvatar() throws Exception {
+		MockHttpServletResponse response = serve(new MockHttpServletRequest());
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+		assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"etag-1\"");
+		assertThat(response.getContentType()).isEqualTo("image/png");
+	}
+
+	@Test
+	void answersIfNoneMatchWith304() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"etag-1\"");
+
+		MockHttpServletResponse response = serve(request);
+
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getContentAsByteArray()).isEmpty();
+	}
+
+	@Test
+	void servesASingleRangeWith206() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(HttpHeaders.RANGE, "bytes=-4");
+
+		MockHttpServletResponse response = serve(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 6-9/10");
+		assertThat(response.getContentAsString()).isEqualTo("6789");
+	}
+
+	@Test
+	void answersAnUnsatisfiableRangeWith416() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(HttpHeaders.RANGE, "bytes=20-");
+
+		MockHttpServletResponse response = serve(request);
+
+		assertThat(response.getStatus()).isEqualTo(416);
+		assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+	}
+
+	@Test
+	void servesEverythingForMultipleRangesOrAStaleIfRange() throws Exception {
+		MockHttpServletRequest multi = new MockHttpServletRequest();
+		multi.addHeader(HttpHeaders.RANGE, "bytes=0-1,4-5");
+		MockHttpServletRequest stale = new MockHttpServletRequest();
+		stale.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+		stale.addHeader(HttpHeaders.IF_RANGE, "\"old\"");
+
+		for (MockHttpServletRequest request : new MockHttpServletRequest[]{multi, stale}) {
+			MockHttpServletResponse response = serve(request);
+			assertThat(response.getStatus()).isEqualTo(200);
+			assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+		}
+	}
+
+	@Test
+	void answers404WithoutAnAvatar() throws Exception {
+		when(userService.getProfileImageKey(userId)).thenReturn(Optional.empty());
+
+		assertThat(serve(new MockHttpServletRequest()).getStatus()).isEqualTo(404);
+	}
+
+	private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.getUserAvatar(userId, request, response);
+		return response;
+	}
+}
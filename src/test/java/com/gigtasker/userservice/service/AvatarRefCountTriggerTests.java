@@ -0,0 +1,120 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.entity.User;
+import com.gigtasker.userservice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The avatar_objects reference counts kept by the users trigger (changelog 008)
+@SpringBootTest
+@Transactional
+class AvatarRefCountTriggerTests {
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void insertsCountEveryUserPointingAtAnObject() {
+		String key = newKey();
+
+		insertUser(key);
+		assertThat(refCount(key)).isEqualTo(1);
+		insertUser(key);
+		assertThat(refCount(key)).isEqualTo(2);
+		assertThat(row(key).get("orphaned_at")).isNull();
+	}
+
+	@Test
+	void changingTheAvatarMovesTheReference() {
+		String oldKey = newKey();
+		String newKey = newKey();
+		User user = insertUser(oldKey);
+		insertUser(oldKey);
+
+		setAvatar(user.getId(), newKey);
+
+		assertThat(refCount(oldKey)).isEqualTo(1);
+		assertThat(refCount(newKey)).isEqualTo(1);
+		assertThat(row(oldKey).get("orphaned_at")).isNull();
+	}
+
+	@Test
+	void lastReferenceGoneMarksTheObjectOrphaned() {
+		String key = newKey();
+		User cleared = insertUser(key);
+		User deleted = insertUser(key);
+
+		setAvatar(cleared.getId(), null);
+		assertThat(refCount(key)).isEqualTo(1);
+		assertThat(row(key).get("orphaned_at")).isNull();
+
+		// Hard delete, as the retention job and the admin purge do
+		jdbcTemplate.update("DELETE FROM users WHERE id = ?", deleted.getId());
+		assertThat(refCount(key)).isZero();
+		assertThat(row(key).get("orphaned_at")).isNotNull();
+	}
+
+	@Test
+	void reReferencingAnOrphanClearsOrphanedAt() {
+		String key = newKey();
+		User user = insertUser(key);
+		setAvatar(user.getId(), null);
+		assertThat(row(key).get("orphaned_at")).isNotNull();
+
+		setAvatar(user.getId(), key);
+
+		assertThat(refCount(key)).isEqualTo(1);
+		assertThat(row(key).get("orphaned_at")).isNull();
+	}
+
+	@Test
+	void updatesThatDontTouchTheAvatarLeaveCountsAlone() {
+		String key = newKey();
+		User user = insertUser(key);
+
+		jdbcTemplate.update("UPDATE users SET first_name = 'Renamed' WHERE id = ?", user.getId());
+		setAvatar(user.getId(), key);
+
+		assertThat(refCount(key)).isEqualTo(1);
+	}
+
+	private User insertUser(String avatarKey) {
+		String suffix = UUID.randomUUID().toString().substring(0, 8);
+		return userRepository.saveAndFlush(User.builder()
+				.keycloakId(UUID.randomUUID())
+				.username("avatar_ref_" + suffix)
+				.email("avatar_ref_" + suffix + "@example.com")
+				.firstName("Avatar")
+				.lastName("Ref")
+				.profileImageUrl(avatarKey)
+				.build());
+	}
+
+	private void setAvatar(Long userId, String avatarKey) {
+		jdbcTemplate.update("UPDATE users SET profile_image_url = ? WHERE id = ?", avatarKey, userId);
+	}
+
+	private int refCount(String key) {
+		return jdbcTemplate.queryForObject("SELECT ref_count FROM avatar_objects WHERE object_key = ?",
+				Integer.class, key);
+	}
+
+	private Map<String, Object> row(String key) {
+		return jdbcTemplate.queryForMap("SELECT * FROM avatar_objects WHERE object_key = ?", key);
+	}
+
+	private static String newKey() {
+		return "avatars/test-" + UUID.randomUUID() + ".png";
+	}
+}
@@ -0,0 +1,191 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.exceptions.AWSStorageException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.minio.MinIOContainer;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Testcontainers(disabledWithoutDocker = true)
+class StorageServiceMinioTests {
+
+	@Container
+	static final MinIOContainer MINIO = new MinIOContainer("minio/minio:latest");
+
+	private S3AsyncClient s3AsyncClient;
+	private MeterRegistry meterRegistry;
+	private StorageService storageService;
+	private String bucket;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		s3AsyncClient = S3AsyncClient.builder()
+				.endpointOverride(URI.create(MINIO.getS3URL()))
+				.region(Region.US_EAST_1)
+				.credentialsProvider(StaticCredentialsProvider.create(
+						AwsBasicCredentials.create(MINIO.getUserName(), MINIO.getPassword())))
+				.forcePathStyle(true)
+				.build();
+		bucket = "avatars-" + UUID.randomUUID();
+		s3AsyncClient.createBucket(b -> b.bucket(bucket)).get(10, TimeUnit.SECONDS);
+
+		meterRegistry = new SimpleMeterRegistry();
+		storageService = new StorageService(s3AsyncClient, meterRegistry, 4);
+		ReflectionTestUtils.setField(storageService, "bucketName", bucket);
+		ReflectionTestUtils.setField(storageService, "endpoint", MINIO.getS3URL());
+		ReflectionTestUtils.setField(storageService, "retryAfter", Duration.ofSeconds(1));
+	}
+
+	@AfterEach
+	void tearDown() {
+		s3AsyncClient.close();
+	}
+
+	@Test
+	void uploadStoresTheObjectUnderItsContentHash() throws Exception {
+		byte[] content = "avatar-bytes".getBytes(StandardCharsets.UTF_8);
+
+		String key = storageService.uploadProfileImageAsync(UUID.randomUUID(), avatar(content), k -> k)
+				.get(10, TimeUnit.SECONDS);
+
+		assertThat(key).isEqualTo("avatars/" + sha256(content) + ".png");
+		HeadObjectResponse head = s3AsyncClient.headObject(b -> b.bucket(bucket).key(key)).get(10, TimeUnit.SECONDS);
+		assertThat(head.contentLength()).isEqualTo(content.length);
+		assertThat(head.contentType()).isEqualTo("image/png");
+		assertThat(head.cacheControl()).contains("immutable");
+
+		assertThat(meterRegistry.get("storage.upload").timer().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("storage.upload.bytes").counter().count()).isEqualTo(content.length);
+		assertThat(meterRegistry.get("storage.upload.deduplicated").counter().count()).isZero();
+		assertThat(meterRegistry.get("storage.upload.failures").counter().count()).isZero();
+	}
+
+	@Test
+	void sameContentIsUploadedOnlyOnce() throws Exception {
+		byte[] content = "same-avatar".getBytes(StandardCharsets.UTF_8);
+
+		String first = storageService.uploadProfileImageAsync(UUID.randomUUID(), avatar(content), k -> k)
+				.get(10, TimeUnit.SECONDS);
+		String second = storageService.uploadProfileImageAsync(UUID.randomUUID(), avatar(content), k -> k)
+				.get(10, TimeUnit.SECONDS);
+
+		assertThat(second).isEqualTo(first);
+		assertThat(meterRegistry.get("storage.upload").timer().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("storage.upload.deduplicated").counter().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("storage.upload.in.flight").gauge().value()).isZero();
+	}
+
+	@Test
+	void keyDependsOnTheBytesAndContentTypeNotTheFilename() throws Exception {
+		byte[] content = "same-photo".getBytes(StandardCharsets.UTF_8);
+
+		String jpg = storageService.uploadProfileImageAsync(UUID.randomUUID(),
+				new MockMultipartFile("file", "a.jpg", "image/jpeg", content), k -> k).get(10, TimeUnit.SECONDS);
+		String jpeg = storageService.uploadProfileImageAsync(UUID.randomUUID(),
+				new MockMultipartFile("file", "a.JPEG", "image/JPEG; charset=binary", content), k -> k)
+				.get(10, TimeUnit.SECONDS);
+		String unknown = storageService.uploadProfileImageAsync(UUID.randomUUID(),
+				new MockMultipartFile("file", "../evil.sh", "text/x-shellscript", content), k -> k)
+				.get(10, TimeUnit.SECONDS);
+
+		assertThat(jpg).isEqualTo("avatars/" + sha256(content) + ".jpg");
+		assertThat(jpeg).isEqualTo(jpg);
+		assertThat(unknown).isEqualTo("avatars/" + sha256(content));
+		HeadObjectResponse head = s3AsyncClient.headObject(b -> b.bucket(bucket).key(unknown)).get(10, TimeUnit.SECONDS);
+		assertThat(head.contentType()).isEqualTo("application/octet-stream");
+		assertThat(meterRegistry.get("storage.upload.deduplicated").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void skippedUploadIsWrittenBackWhenTheObjectVanishedBeforeCommit() throws Exception {
+		byte[] content = "cleaned-up".getBytes(StandardCharsets.UTF_8);
+		String key = storageService.uploadProfileImageAsync(UUID.randomUUID(), avatar(content), k -> k)
+				.get(10, TimeUnit.SECONDS);
+
+		// The orphan cleanup deletes the object between our HEAD and our commit
+		storageService.uploadProfileImageAsync(UUID.randomUUID(), avatar(content), k -> {
+			storageService.deleteAsync(k).join();
+			return k;
+		}).get(10, TimeUnit.SECONDS);
+
+		assertThat(storageService.existsAsync(key).get(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(meterRegistry.get("storage.upload").timer().count()).isEqualTo(2);
+	}
+
+	@Test
+	void freshUploadIsWrittenBackWhenTheObjectVanishedBeforeCommit() throws Exception {
+		byte[] content = "fresh-then-cleaned".getBytes(StandardCharsets.UTF_8);
+
+		String key = storageService.uploadProfileImageAsync(UUID.randomUUID(), avatar(content), k -> {
+			storageService.deleteAsync(k).join();
+			return k;
+		}).get(10, TimeUnit.SECONDS);
+
+		assertThat(storageService.existsAsync(key).get(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(meterRegistry.get("storage.upload").timer().count()).isEqualTo(2);
+		assertThat(meterRegistry.get("storage.upload.deduplicated").counter().count()).isZero();
+	}
+
+	@Test
+	void writeBackIsNotTurnedAwayWhenAllOtherPermitsAreTaken() throws Exception {
+		meterRegistry = new SimpleMeterRegistry();
+		storageService = new StorageService(s3AsyncClient, meterRegistry, 1);
+		ReflectionTestUtils.setField(storageService, "bucketName", bucket);
+		ReflectionTestUtils.setField(storageService, "retryAfter", Duration.ofSeconds(1));
+		byte[] content = "only-permit".getBytes(StandardCharsets.UTF_8);
+
+		// Our upload holds the only permit while the cleanup deletes the object under it
+		String key = storageService.uploadProfileImageAsync(UUID.randomUUID(), avatar(content), k -> {
+			storageService.deleteAsync(k).join();
+			return k;
+		}).get(10, TimeUnit.SECONDS);
+
+		assertThat(storageService.existsAsync(key).get(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(meterRegistry.get("storage.upload.writeback.failures").counter().count()).isZero();
+	}
+
+	@Test
+	void failedUploadIsCountedAndSurfaced() {
+		ReflectionTestUtils.setField(storageService, "bucketName", "missing-" + UUID.randomUUID());
+
+		assertThatThrownBy(() -> storageService.putAsync("avatars/x.png", new byte[]{1, 2, 3}, "image/png")
+				.get(10, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(AWSStorageException.class);
+
+		assertThat(meterRegistry.get("storage.upload.failures").counter().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("storage.upload.bytes").counter().count()).isZero();
+		assertThat(meterRegistry.get("storage.upload.in.flight").gauge().value()).isZero();
+	}
+
+	private static MockMultipartFile avatar(byte[] content) {
+		return new MockMultipartFile("file", "me.png", "image/png", content);
+	}
+
+	private static String sha256(byte[] content) throws Exception {
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+	}
+}
@@ -0,0 +1,101 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.userservice.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserIdentityIndexTests {
+
+	private final UserRepository userRepository = mock(UserRepository.class);
+	private UserIdentityIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new UserIdentityIndex(userRepository, mock(PlatformTransactionManager.class), 1_000, 0.001);
+		when(userRepository.existsByUsernameIn(anyCollection())).thenReturn(true);
+		when(userRepository.existsByEmailIn(anyCollection())).thenReturn(true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void unknownNamesAreAnsweredWithoutTheDatabase() {
+		load(List.of("alice"), List.of("alice@example.com"));
+
+		assertThat(index.isUsernameTaken("bob")).isFalse();
+		assertThat(index.isEmailTaken("bob@example.com")).isFalse();
+		verify(userRepository, never()).existsByUsernameIn(anyCollection());
+		verify(userRepository, never()).existsByEmailIn(anyCollection());
+	}
+
+	@Test
+	void knownNamesAreConfirmedAgainstTheDatabase() {
+		load(List.of("alice"), List.of("alice@example.com"));
+
+		assertThat(index.isUsernameTaken(" Alice ")).isTrue();
+		verify(userRepository).existsByUsernameIn(anyCollection());
+	}
+
+	@Test
+	void recordDuringRebuildReachesTheNewFilters() {
+		load(List.of("alice"), List.of("alice@example.com"));
+
+		// The stream has already been read when the registration is recorded, but the swap hasn't happened yet
+		when(userRepository.countIncludingDeleted()).thenReturn(1L);
+		when(userRepository.streamAllUsernames()).thenAnswer(inv -> {
+			index.record("carol", "carol@example.com");
+			return Stream.of("alice");
+		});
+		when(userRepository.streamAllEmails()).thenReturn(Stream.of("alice@example.com"));
+		index.load();
+
+		assertThat(index.isUsernameTaken("carol")).isTrue();
+		assertThat(index.isEmailTaken("carol@example.com")).isTrue();
+	}
+
+	@Test
+	void recordInsideATransactionAppliesAfterItCompletesEvenAcrossARebuild() {
+		load(List.of("alice"), List.of("alice@example.com"));
+
+		// Registration records inside its transaction...
+		TransactionSynchronizationManager.initSynchronization();
+		index.record("dave", "dave@example.com");
+		List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+
+		// ...a rebuild streams before that transaction commits, so the DB doesn't show dave yet...
+		load(List.of("alice"), List.of("alice@example.com"));
+		assertThat(index.isUsernameTaken("dave")).isFalse();
+
+		// ...and the commit lands after the swap
+		synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+		assertThat(index.isUsernameTaken("dave")).isTrue();
+		assertThat(index.isEmailTaken("dave@example.com")).isTrue();
+	}
+
+	private void load(List<String> usernames, List<String> emails) {
+		when(userRepository.countIncludingDeleted()).thenReturn((long) usernames.size());
+		when(userRepository.streamAllUsernames()).thenAnswer(inv -> usernames.stream());
+		when(userRepository.streamAllEmails()).thenAnswer(inv -> emails.stream());
+		index.load();
+	}
+}
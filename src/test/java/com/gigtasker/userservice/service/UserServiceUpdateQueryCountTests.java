@@ -0,0 +1,105 @@
+package com.gigtasker.userservice.service;
+
+import com.gigtasker.common.dto.UserDTO;
+import com.gigtasker.userservice.dto.CountryDTO;
+import com.gigtasker.userservice.dto.GenderDTO;
+import com.gigtasker.userservice.dto.UserUpdateDTO;
+import com.gigtasker.userservice.entity.User;
+import com.gigtasker.userservice.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector="
+				+ "com.gigtasker.userservice.service.UserServiceUpdateQueryCountTests$CapturedSql"
+})
+@Transactional
+class UserServiceUpdateQueryCountTests {
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ReferenceIndex referenceIndex;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void patchWithGenderAndCountryIssuesOneSelectAndOneUpdate() {
+		GenderDTO gender = referenceIndex.getAllGenders().getLast();
+		CountryDTO country = referenceIndex.getAllCountries().getLast();
+		String suffix = UUID.randomUUID().toString().substring(0, 8);
+		User existing = userRepository.saveAndFlush(User.builder()
+				.keycloakId(UUID.randomUUID())
+				.username("query_count_" + suffix)
+				.email("query_count_" + suffix + "@example.com")
+				.firstName("Before")
+				.lastName("Patch")
+				.build());
+		entityManager.clear();
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		CapturedSql.STATEMENTS.clear();
+
+		UserDTO updated = userService.updateUser(existing.getKeycloakId(), new UserUpdateDTO(
+				"Patched", null, null, null, gender.id(), country.id()));
+		entityManager.flush();
+
+		// The user (with gender, country and roles) in one SELECT, then the UPDATE; no reference-table lookups
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
+
+		// @DynamicUpdate: only the columns that changed are written
+		List<String> userUpdates = CapturedSql.STATEMENTS.stream()
+				.filter(sql -> sql.toLowerCase(Locale.ROOT).startsWith("update users "))
+				.toList();
+		assertThat(userUpdates).hasSize(1);
+		assertThat(setColumns(userUpdates.getFirst())).containsExactlyInAnyOrder("first_name", "gender_id", "country_id");
+
+		assertThat(updated.gender()).isEqualTo(gender.description());
+		assertThat(updated.country()).isEqualTo(country.name());
+	}
+
+	private static List<String> setColumns(String updateSql) {
+		String sql = updateSql.toLowerCase(Locale.ROOT);
+		String assignments = sql.substring(sql.indexOf(" set ") + " set ".length(), sql.indexOf(" where "));
+		return Arrays.stream(assignments.split(","))
+				.map(assignment -> assignment.substring(0, assignment.indexOf('=')).trim())
+				.toList();
+	}
+
+	public static class CapturedSql implements StatementInspector {
+
+		static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			STATEMENTS.add(sql);
+			return sql;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.gigtasker.userservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTests {
+
+	@Test
+	void neverReportsAFalseNegative() {
+		BloomFilter filter = BloomFilter.create(10_000, 0.01);
+		IntStream.range(0, 10_000).forEach(i -> filter.put("user" + i + "@example.com"));
+
+		assertThat(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain("user" + i + "@example.com"))).isTrue();
+	}
+
+	@Test
+	void falsePositiveRateStaysNearTheConfiguredRateAtCapacity() {
+		BloomFilter filter = BloomFilter.create(50_000, 0.01);
+		IntStream.range(0, 50_000).forEach(i -> filter.put("member-" + i));
+
+		long falsePositives = IntStream.range(0, 100_000).filter(i -> filter.mightContain("stranger-" + i)).count();
+
+		// 1% configured; allow some slack for the hash, not an order of magnitude
+		assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+	}
+
+	@Test
+	void concurrentPutsAreAllVisible() throws Exception {
+		BloomFilter filter = BloomFilter.create(80_000, 0.01);
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+			for (int t = 0; t < 8; t++) {
+				int thread = t;
+				executor.submit(() -> IntStream.range(0, 10_000).forEach(i -> filter.put(thread + ":" + i)));
+			}
+		}
+
+		for (int t = 0; t < 8; t++) {
+			int thread = t;
+			assertThat(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain(thread + ":" + i))).isTrue();
+		}
+	}
+
+	@Test
+	void emptyFilterContainsNothing() {
+		BloomFilter filter = BloomFilter.create(100, 0.01);
+
+		assertThat(filter.mightContain("anyone")).isFalse();
+		assertThat(filter.mightContain("")).isFalse();
+	}
+}
@@ -0,0 +1,62 @@
+package com.gigtasker.userservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountMinSketchTests {
+
+	@Test
+	void neverUndercountsAndStaysWithinTheErrorBound() {
+		int width = 2048;
+		int depth = 5;
+		CountMinSketch sketch = new CountMinSketch(width, depth);
+		Map<Long, Long> exact = new HashMap<>();
+		SplittableRandom random = new SplittableRandom(7);
+
+		int total = 200_000;
+		for (int i = 0; i < total; i++) {
+			long key = random.nextInt(20_000);
+			sketch.add(key);
+			exact.merge(key, 1L, Long::sum);
+		}
+
+		// Overcount is at most e/width * total with probability 1 - e^-depth (~99.3%) per key
+		double bound = Math.E / width * total;
+		long outside = 0;
+		for (Map.Entry<Long, Long> entry : exact.entrySet()) {
+			long estimate = sketch.estimate(entry.getKey());
+			assertThat(estimate).isGreaterThanOrEqualTo(entry.getValue());
+			if (estimate - entry.getValue() > bound) outside++;
+		}
+		assertThat((double) outside / exact.size()).isLessThan(0.02);
+	}
+
+	@Test
+	void addReturnsTheNewEstimate() {
+		CountMinSketch sketch = new CountMinSketch(1024, 4);
+
+		assertThat(sketch.add(42)).isEqualTo(1);
+		assertThat(sketch.add(42)).isEqualTo(2);
+		assertThat(sketch.estimate(42)).isEqualTo(2);
+		assertThat(sketch.estimate(43)).isZero();
+	}
+
+	@Test
+	void resetClearsAllCounters() {
+		CountMinSketch sketch = new CountMinSketch(64, 3);
+		for (long key = 0; key < 1_000; key++) {
+			sketch.add(key);
+		}
+
+		sketch.reset();
+
+		for (long key = 0; key < 1_000; key++) {
+			assertThat(sketch.estimate(key)).isZero();
+		}
+	}
+}
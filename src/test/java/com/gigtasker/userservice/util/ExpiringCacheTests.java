@@ -0,0 +1,90 @@
+package com.gigtasker.userservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiringCacheTests {
+
+	@Test
+	void returnsValuesUntilTheyExpire() throws InterruptedException {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMillis(50), 10);
+		cache.put("a", "1", cache.stamp());
+		assertThat(cache.get("a")).isEqualTo("1");
+
+		Thread.sleep(80);
+
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	void doesNotStoreAValueLoadedAcrossAnInvalidation() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMinutes(1), 10);
+
+		long stamp = cache.stamp();
+		// Someone changes the user while we are still reading the old row
+		cache.invalidate("a");
+		cache.put("a", "stale", stamp);
+
+		assertThat(cache.get("a")).isNull();
+	}
+
+	@Test
+	void anyInvalidationMovesTheStamp() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMinutes(1), 10);
+
+		long stamp = cache.stamp();
+		cache.invalidate("other");
+		assertThat(cache.stamp()).isNotEqualTo(stamp);
+
+		stamp = cache.stamp();
+		cache.invalidateIf(value -> false);
+		assertThat(cache.stamp()).isNotEqualTo(stamp);
+
+		stamp = cache.stamp();
+		cache.clear();
+		assertThat(cache.stamp()).isNotEqualTo(stamp);
+	}
+
+	@Test
+	void invalidateIfRemovesMatchingValues() {
+		ExpiringCache<String, Integer> cache = new ExpiringCache<>(Duration.ofMinutes(1), 10);
+		cache.put("a", 1, cache.stamp());
+		cache.put("b", 2, cache.stamp());
+		cache.put("c", 3, cache.stamp());
+
+		cache.invalidateIf(value -> value % 2 == 1);
+
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.get("b")).isEqualTo(2);
+		assertThat(cache.get("c")).isNull();
+	}
+
+	@Test
+	void whenFullSweepsExpiredEntriesOrSkipsCaching() throws InterruptedException {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMillis(50), 2);
+		cache.put("a", "1", cache.stamp());
+		cache.put("b", "2", cache.stamp());
+
+		cache.put("c", "3", cache.stamp());
+		assertThat(cache.get("c")).isNull();
+		assertThat(cache.size()).isEqualTo(2);
+
+		Thread.sleep(80);
+		cache.put("c", "3", cache.stamp());
+		assertThat(cache.get("c")).isEqualTo("3");
+		assertThat(cache.size()).isEqualTo(1);
+	}
+
+	@Test
+	void zeroTtlDisablesCaching() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ZERO, 10);
+		cache.put("a", "1", cache.stamp());
+
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.size()).isZero();
+	}
+}
@@ -0,0 +1,57 @@
+package com.gigtasker.userservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTests {
+
+	@Test
+	void estimatesLargeCardinalitiesWithinTheErrorBound() {
+		HyperLogLog hll = new HyperLogLog(14);
+		int distinct = 500_000;
+		for (long key = 0; key < distinct; key++) {
+			hll.add(key * 31 + 7);
+		}
+
+		// Standard error at precision 14 is ~0.81%; 3% is well over three of them
+		assertThat((double) hll.estimate()).isCloseTo(distinct, within(distinct * 0.03));
+	}
+
+	@Test
+	void smallCardinalitiesAreNearlyExact() {
+		HyperLogLog hll = new HyperLogLog(14);
+		for (long key = 1; key <= 1_000; key++) {
+			hll.add(key);
+		}
+
+		assertThat((double) hll.estimate()).isCloseTo(1_000, within(20.0));
+	}
+
+	@Test
+	void repeatedKeysCountOnce() {
+		HyperLogLog hll = new HyperLogLog(12);
+		for (int round = 0; round < 100; round++) {
+			for (long key = 0; key < 500; key++) {
+				hll.add(key);
+			}
+		}
+
+		assertThat((double) hll.estimate()).isCloseTo(500, within(25.0));
+	}
+
+	@Test
+	void resetStartsFromZero() {
+		HyperLogLog hll = new HyperLogLog(10);
+		for (long key = 0; key < 10_000; key++) {
+			hll.add(key);
+		}
+
+		hll.reset();
+
+		assertThat(hll.estimate()).isZero();
+		hll.add(1);
+		assertThat(hll.estimate()).isEqualTo(1);
+	}
+}
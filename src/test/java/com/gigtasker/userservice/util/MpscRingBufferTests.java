@@ -0,0 +1,135 @@
+package com.gigtasker.userservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MpscRingBufferTests {
+
+	@Test
+	void capacityIsRoundedUpToAPowerOfTwo() {
+		assertThat(new MpscRingBuffer<>(5).capacity()).isEqualTo(8);
+		assertThat(new MpscRingBuffer<>(8).capacity()).isEqualTo(8);
+		assertThatThrownBy(() -> new MpscRingBuffer<>(1)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsOffersWhenFullAndAcceptsAgainAfterAPoll() {
+		MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+		for (int i = 0; i < 4; i++) {
+			assertThat(buffer.offer(i)).isTrue();
+		}
+
+		assertThat(buffer.offer(4)).isFalse();
+		assertThat(buffer.size()).isEqualTo(4);
+
+		assertThat(buffer.poll()).isZero();
+		assertThat(buffer.offer(4)).isTrue();
+		assertThat(buffer.offer(5)).isFalse();
+	}
+
+	@Test
+	void keepsFifoOrderAcrossManyWrapArounds() {
+		MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+		List<Integer> drained = new ArrayList<>();
+		int next = 0;
+
+		// Uneven offer/drain sizes so head and tail wrap at different slots
+		for (int round = 0; round < 1_000; round++) {
+			int offers = 1 + round % 4;
+			for (int i = 0; i < offers && buffer.offer(next); i++) {
+				next++;
+			}
+			buffer.drainTo(drained, 1 + round % 3);
+		}
+		buffer.drainTo(drained, Integer.MAX_VALUE);
+
+		assertThat(buffer.poll()).isNull();
+		assertThat(drained).hasSize(next);
+		for (int i = 0; i < drained.size(); i++) {
+			assertThat(drained.get(i)).isEqualTo(i);
+		}
+	}
+
+	@Test
+	void drainToStopsAtTheLimit() {
+		MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(8);
+		for (int i = 0; i < 6; i++) {
+			buffer.offer(i);
+		}
+		List<Integer> drained = new ArrayList<>();
+
+		assertThat(buffer.drainTo(drained, 4)).isEqualTo(4);
+		assertThat(drained).containsExactly(0, 1, 2, 3);
+		assertThat(buffer.size()).isEqualTo(2);
+	}
+
+	@Test
+	void concurrentProducersLoseNothingAndKeepPerProducerOrder() throws Exception {
+		int producers = 8;
+		int perProducer = 20_000;
+		// Much smaller than the total so producers keep hitting a full, wrapping buffer
+		MpscRingBuffer<Long> buffer = new MpscRingBuffer<>(256);
+		AtomicInteger rejected = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		List<Long> consumed = new ArrayList<>(producers * perProducer);
+		try (ExecutorService executor = Executors.newFixedThreadPool(producers)) {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int p = 0; p < producers; p++) {
+				long producer = p;
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int seq = 0; seq < perProducer; seq++) {
+						while (!buffer.offer(producer << 32 | seq)) {
+							rejected.incrementAndGet();
+							// Yield rather than spin, so the consumer gets CPU time on small machines too
+							Thread.yield();
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+			while (consumed.size() < producers * perProducer && System.nanoTime() < deadline) {
+				if (buffer.drainTo(consumed, 64) == 0) {
+					Thread.yield();
+				}
+			}
+			for (Future<?> future : futures) {
+				future.get(5, TimeUnit.SECONDS);
+			}
+		}
+
+		assertThat(consumed).hasSize(producers * perProducer);
+		assertThat(buffer.size()).isZero();
+		assertThat(rejected.get()).isPositive();
+
+		int[] lastSeq = new int[producers];
+		Arrays.fill(lastSeq, -1);
+		Set<Long> seen = new HashSet<>();
+		for (long value : consumed) {
+			assertThat(seen.add(value)).isTrue();
+			int producer = (int) (value >>> 32);
+			int seq = (int) value;
+			// One producer's elements come out in the order it offered them
+			assertThat(seq).isEqualTo(lastSeq[producer] + 1);
+			lastSeq[producer] = seq;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.gigtasker.userservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NegativeCacheTests {
+
+	@Test
+	void remembersMissingKeysUntilInvalidated() {
+		NegativeCache<Long> missing = new NegativeCache<>(Duration.ofMinutes(1), 100);
+		missing.add(1L, missing.stamp());
+
+		assertThat(missing.contains(1L)).isTrue();
+		assertThat(missing.contains(2L)).isFalse();
+
+		missing.invalidate(1L);
+		assertThat(missing.contains(1L)).isFalse();
+	}
+
+	@Test
+	void aMissRacingWithACreationIsNotRecorded() {
+		NegativeCache<Long> missing = new NegativeCache<>(Duration.ofMinutes(1), 100);
+
+		long stamp = missing.stamp();
+		// The user is created (and invalidated) after our query saw nothing
+		missing.invalidate(1L);
+		missing.add(1L, stamp);
+
+		assertThat(missing.contains(1L)).isFalse();
+	}
+
+	@Test
+	void entriesExpire() throws InterruptedException {
+		NegativeCache<Long> missing = new NegativeCache<>(Duration.ofMillis(50), 100);
+		missing.add(1L, missing.stamp());
+
+		Thread.sleep(80);
+
+		assertThat(missing.contains(1L)).isFalse();
+	}
+
+	@Test
+	void clearForgetsEverything() {
+		NegativeCache<String> missing = new NegativeCache<>(Duration.ofMinutes(1), 100);
+		missing.add("a@example.com", missing.stamp());
+		missing.add("b@example.com", missing.stamp());
+
+		missing.clear();
+
+		assertThat(missing.size()).isZero();
+		assertThat(missing.contains("a@example.com")).isFalse();
+	}
+}
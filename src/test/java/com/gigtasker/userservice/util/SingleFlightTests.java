@@ -0,0 +1,108 @@
+package com.gigtasker.userservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTests {
+
+	@Test
+	void concurrentCallersShareOneExecution() throws Exception {
+		AtomicInteger shared = new AtomicInteger();
+		AtomicInteger calls = new AtomicInteger();
+		SingleFlight<String, Integer> flights = new SingleFlight<>(Duration.ZERO, shared::incrementAndGet);
+		CountDownLatch loaderStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+			Future<Integer> leader = executor.submit(() -> flights.execute("k", () -> {
+				loaderStarted.countDown();
+				release.await();
+				return calls.incrementAndGet();
+			}));
+			assertThat(loaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+			Future<?>[] followers = new Future<?>[7];
+			for (int i = 0; i < followers.length; i++) {
+				followers[i] = executor.submit(() -> flights.execute("k", calls::incrementAndGet));
+			}
+			waitUntil(() -> shared.get() == followers.length);
+			release.countDown();
+
+			assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+			for (Future<?> follower : followers) {
+				assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+			}
+		}
+		assertThat(calls).hasValue(1);
+		assertThat(flights.size()).isZero();
+	}
+
+	@Test
+	void errorInLoaderReleasesWaitersAndFreesTheKey() throws Exception {
+		AtomicInteger shared = new AtomicInteger();
+		SingleFlight<String, String> flights = new SingleFlight<>(Duration.ofMinutes(1), shared::incrementAndGet);
+		CountDownLatch loaderStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+			Future<String> leader = executor.submit(() -> flights.execute("k", () -> {
+				loaderStarted.countDown();
+				release.await();
+				throw new StackOverflowError("boom");
+			}));
+			assertThat(loaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+			Future<String> follower = executor.submit(() -> flights.execute("k", () -> "unused"));
+			waitUntil(() -> shared.get() == 1);
+			release.countDown();
+
+			assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+			assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+		}
+
+		assertThat(flights.size()).isZero();
+		assertThat(flights.execute("k", () -> "retried")).isEqualTo("retried");
+	}
+
+	@Test
+	void failuresAreNotRetained() throws Exception {
+		SingleFlight<String, String> flights = new SingleFlight<>(Duration.ofMinutes(1), () -> { });
+
+		assertThatThrownBy(() -> flights.execute("k", () -> {
+			throw new IllegalStateException("down");
+		})).isInstanceOf(IllegalStateException.class);
+
+		assertThat(flights.execute("k", () -> "ok")).isEqualTo("ok");
+	}
+
+	@Test
+	void retainedResultIsReusedThenEvicted() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		SingleFlight<String, Integer> flights = new SingleFlight<>(Duration.ofMillis(200), () -> { });
+
+		assertThat(flights.execute("k", calls::incrementAndGet)).isEqualTo(1);
+		assertThat(flights.execute("k", calls::incrementAndGet)).isEqualTo(1);
+
+		// Dropped on its own, without another call for the key or any size threshold
+		waitUntil(() -> flights.size() == 0);
+		assertThat(flights.execute("k", calls::incrementAndGet)).isEqualTo(2);
+	}
+
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.gigtasker.userservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKTests {
+
+	@Test
+	void keepsTheHighestCountsAndReplacesTheMinimum() {
+		TopK topK = new TopK(3);
+		topK.offer(1, 10);
+		topK.offer(2, 20);
+		topK.offer(3, 30);
+
+		topK.offer(4, 5);
+		assertThat(keys(topK)).containsExactly(3L, 2L, 1L);
+
+		topK.offer(4, 15);
+		assertThat(keys(topK)).containsExactly(3L, 2L, 4L);
+	}
+
+	@Test
+	void updatesAKeyAlreadyInTheTableWithoutDuplicatingIt() {
+		TopK topK = new TopK(2);
+		topK.offer(1, 1);
+		topK.offer(1, 7);
+		topK.offer(1, 3);
+
+		assertThat(topK.snapshot()).containsExactly(new TopK.Entry(1, 7));
+	}
+
+	@Test
+	void findsTheHeavyHittersOfASkewedStream() {
+		CountMinSketch sketch = new CountMinSketch(4096, 4);
+		TopK topK = new TopK(10);
+		SplittableRandom random = new SplittableRandom(42);
+
+		// Keys 0..9 get half of all reads, 100 000 other keys share the rest
+		for (int i = 0; i < 200_000; i++) {
+			long key = random.nextBoolean() ? random.nextInt(10) : 1_000 + random.nextInt(100_000);
+			topK.offer(key, sketch.add(key));
+		}
+
+		assertThat(keys(topK)).containsExactlyInAnyOrder(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+		assertThat(topK.snapshot()).allSatisfy(entry -> assertThat(entry.count()).isBetween(9_000L, 11_000L));
+	}
+
+	@Test
+	void concurrentOffersKeepTheHeavyHitters() throws Exception {
+		CountMinSketch sketch = new CountMinSketch(4096, 4);
+		TopK topK = new TopK(5);
+		CountDownLatch start = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+			Future<?>[] futures = new Future<?>[8];
+			for (int t = 0; t < futures.length; t++) {
+				int seed = t;
+				futures[t] = executor.submit(() -> {
+					SplittableRandom random = new SplittableRandom(seed);
+					start.await();
+					for (int i = 0; i < 50_000; i++) {
+						long key = random.nextInt(4) == 0 ? 1_000 + random.nextInt(50_000) : random.nextInt(5);
+						topK.offer(key, sketch.add(key));
+					}
+					return null;
+				});
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		}
+
+		assertThat(keys(topK)).containsExactlyInAnyOrder(0L, 1L, 2L, 3L, 4L);
+	}
+
+	@Test
+	void resetEmptiesTheTableAndLowersTheBar() {
+		TopK topK = new TopK(2);
+		topK.offer(1, 100);
+		topK.offer(2, 200);
+
+		topK.reset();
+		assertThat(topK.snapshot()).isEmpty();
+
+		// Would have been rejected against the old minimum of 100
+		topK.offer(3, 1);
+		assertThat(topK.snapshot()).containsExactly(new TopK.Entry(3, 1));
+	}
+
+	private static List<Long> keys(TopK topK) {
+		return topK.snapshot().stream().map(TopK.Entry::key).toList();
+	}
+}